@@ -0,0 +1,87 @@
+package com.zipnivasa.backend.common.geo;
+
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Local place-name → coordinates table used to geocode listings that
+ * predate coordinates, without calling an online geocoder.
+ *
+ * File format, one place per line, comma or tab separated:
+ *   name,latitude,longitude
+ * Blank lines and lines starting with # are skipped. Names are matched
+ * case-insensitively with whitespace collapsed; the first entry wins.
+ */
+public class Gazetteer {
+
+    private final Map<String, GeoJsonPoint> places;
+
+    private Gazetteer(Map<String, GeoJsonPoint> places) {
+        this.places = places;
+    }
+
+    public static Gazetteer load(Path file) throws IOException {
+        Map<String, GeoJsonPoint> places = new HashMap<>();
+        int lineNo = 0;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNo++;
+            if (line.isBlank() || line.startsWith("#")) continue;
+
+            String[] cols = line.split("[,\\t]");
+            if (cols.length < 3) {
+                System.err.println("Gazetteer " + file + ":" + lineNo + " skipped, expected name,lat,lng");
+                continue;
+            }
+
+            // a name may itself contain commas: the last two columns are the coordinates
+            String name = String.join(",", Arrays.copyOf(cols, cols.length - 2));
+            try {
+                GeoJsonPoint point = GeoPoints.of(
+                        Double.parseDouble(cols[cols.length - 2].trim()),
+                        Double.parseDouble(cols[cols.length - 1].trim()));
+                places.putIfAbsent(normalize(name), point);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Gazetteer " + file + ":" + lineNo + " skipped, bad coordinates");
+            }
+        }
+        return new Gazetteer(places);
+    }
+
+    public int size() {
+        return places.size();
+    }
+
+    /**
+     * The first candidate that is a known place. Each candidate is tried
+     * whole, then by its comma-separated parts from left (most specific
+     * in an address) to right.
+     */
+    public GeoJsonPoint locate(List<String> candidates) {
+        for (String candidate : candidates) {
+            if (candidate == null || candidate.isBlank()) continue;
+
+            GeoJsonPoint whole = places.get(normalize(candidate));
+            if (whole != null) return whole;
+
+            for (String part : candidate.split(",")) {
+                GeoJsonPoint point = places.get(normalize(part));
+                if (point != null) return point;
+            }
+        }
+        return null;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,125 @@
+package com.zipnivasa.backend.common.geo;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Geocodes listings created before coordinates existed, from the local
+ * gazetteer file in geo.gazetteer.file (nothing runs when it is unset).
+ *
+ *  - pgs:     address parts, then location
+ *  - messes:  location
+ *
+ * Listings without a match keep no position and are retried on the next
+ * start. updatedAt is bumped so PGListingIndex.refresh sees the change.
+ */
+@Component
+@RequiredArgsConstructor
+public class GeoBackfill implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${geo.gazetteer.file:}")
+    private String gazetteerFile;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (gazetteerFile == null || gazetteerFile.isBlank()) return;
+
+        Path file = Path.of(gazetteerFile);
+        if (!Files.isReadable(file)) {
+            System.err.println("Geo backfill skipped, cannot read gazetteer " + file);
+            return;
+        }
+
+        Gazetteer gazetteer;
+        try {
+            gazetteer = Gazetteer.load(file);
+        } catch (IOException e) {
+            System.err.println("Geo backfill skipped: " + e.getMessage());
+            return;
+        }
+
+        backfill(gazetteer, "pgs", "address", "location");
+        backfill(gazetteer, "messes", "location");
+    }
+
+    private void backfill(Gazetteer gazetteer, String collection, String... fields) {
+        Query missing = new Query(where("position").exists(false));
+        missing.fields().include(fields);
+
+        int located = 0;
+        int unmatched = 0;
+        // _id → position
+        Map<Object, GeoJsonPoint> batch = new LinkedHashMap<>();
+
+        try (Stream<Document> docs = mongoTemplate.stream(missing, Document.class, collection)) {
+            Iterator<Document> it = docs.iterator();
+            while (it.hasNext()) {
+                Document doc = it.next();
+
+                List<String> candidates = new ArrayList<>(fields.length);
+                for (String field : fields) {
+                    candidates.add(doc.getString(field));
+                }
+
+                GeoJsonPoint point = gazetteer.locate(candidates);
+                if (point == null) {
+                    unmatched++;
+                    continue;
+                }
+
+                batch.put(doc.get("_id"), point);
+                if (batch.size() == BATCH_SIZE) {
+                    located += write(collection, batch);
+                }
+            }
+        }
+        located += write(collection, batch);
+
+        if (located > 0 || unmatched > 0) {
+            System.out.println("Geo backfill " + collection + ": " + located + " located, "
+                    + unmatched + " not in the gazetteer");
+        }
+    }
+
+    private int write(String collection, Map<Object, GeoJsonPoint> batch) {
+        if (batch.isEmpty()) return 0;
+
+        Instant now = Instant.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+        batch.forEach((id, point) -> ops.updateOne(
+                new Query(where("_id").is(id)),
+                new Update().set("position", point).set("updatedAt", now)
+        ));
+        ops.execute();
+
+        int n = batch.size();
+        batch.clear();
+        return n;
+    }
+}
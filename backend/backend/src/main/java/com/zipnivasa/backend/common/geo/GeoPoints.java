@@ -0,0 +1,74 @@
+package com.zipnivasa.backend.common.geo;
+
+import org.bson.Document;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.NearQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinates as stored on listings: a GeoJSON point, [longitude, latitude],
+ * under a 2dsphere index.
+ */
+public final class GeoPoints {
+
+    public static final double MAX_RADIUS_KM = 50;
+
+    private static final String DISTANCE = "distance";
+
+    private GeoPoints() {
+    }
+
+    /** @return null unless both are given */
+    public static GeoJsonPoint of(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) return null;
+
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Invalid coordinates");
+        }
+        return new GeoJsonPoint(longitude, latitude);
+    }
+
+    public static double radiusKm(double requested) {
+        if (!(requested > 0)) throw new IllegalArgumentException("radiusKm must be positive");
+        return Math.min(requested, MAX_RADIUS_KM);
+    }
+
+    public static Double latitude(GeoJsonPoint point) {
+        return point == null ? null : point.getY();
+    }
+
+    public static Double longitude(GeoJsonPoint point) {
+        return point == null ? null : point.getX();
+    }
+
+    /**
+     * MongoTemplate.geoNear, but only fields (plus the first image) come
+     * back: geoNear ignores the projection of near's query. Distances are
+     * in near's metric.
+     */
+    public static <T> List<GeoResult<T>> near(MongoTemplate mongoTemplate, NearQuery near,
+                                              Class<T> type, String... fields) {
+        TypedAggregation<T> aggregation = Aggregation.newAggregation(type,
+                Aggregation.geoNear(near, DISTANCE),
+                Aggregation.project(fields).andInclude(DISTANCE).and("images").slice(1).as("images"))
+                // the distance field is not a property of type
+                .withOptions(AggregationOptions.builder().relaxedMapping().build());
+
+        List<Document> found = mongoTemplate.aggregate(aggregation, Document.class).getMappedResults();
+
+        List<GeoResult<T>> result = new ArrayList<>(found.size());
+        for (Document d : found) {
+            T content = mongoTemplate.getConverter().read(type, d);
+            result.add(new GeoResult<>(content, new Distance(d.get(DISTANCE, Number.class).doubleValue(), near.getMetric())));
+        }
+        return result;
+    }
+}
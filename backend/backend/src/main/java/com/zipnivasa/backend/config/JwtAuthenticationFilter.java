@@ -16,6 +16,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.security.Principal;
 import java.util.List;
 
 @Component
@@ -73,12 +74,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     /**
      * Minimal principal to carry id + role.
      * Controllers can cast Authentication.getPrincipal() to this.
+     * getName() is the user id, which STOMP user destinations route on.
      */
     @Getter
     @Setter
     @RequiredArgsConstructor
-    public static class JwtUserPrincipal {
+    public static class JwtUserPrincipal implements Principal {
         private final String id;
         private final String role;
+
+        @Override
+        public String getName() {
+            return id;
+        }
     }
 }
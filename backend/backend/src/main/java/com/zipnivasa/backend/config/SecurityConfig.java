@@ -41,7 +41,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/pgs/**", "/api/mess/all", "/api/mess/*").permitAll()
                         .requestMatchers("/api/mess-owner/**").permitAll()
                         .requestMatchers("/api/laundry/**").permitAll()
-                        .requestMatchers("/ws/**").permitAll()  // WebSocket STOMP allowed
+                        .requestMatchers("/ws/**", "/ws-native").permitAll()  // WebSocket STOMP allowed
                         .requestMatchers("/api/**").authenticated()
                         .anyRequest().permitAll()
                 )
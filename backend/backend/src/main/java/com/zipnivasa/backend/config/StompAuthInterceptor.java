@@ -0,0 +1,79 @@
+package com.zipnivasa.backend.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Authenticates a STOMP session once, on CONNECT.
+ *
+ * The client sends its JWT in the {@code Authorization} native header
+ * (with or without "Bearer "); the resulting principal is bound to the
+ * session, so later frames carry it without any header parsing and
+ * user destinations (/user/queue/...) route on its name (the user id).
+ *
+ * Subscriptions are limited to user destinations and /topic, the
+ * resolved per-session queues of other users cannot be subscribed to.
+ * SEND only reaches @MessageMapping handlers (/app/...), a client cannot
+ * publish straight into the broker's /topic or /queue destinations.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private final JwtUtil jwtUtil;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        // the mutable accessor: setUser must reach the message the handler sees
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) return message;
+
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION)));
+        } else if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            String destination = accessor.getDestination();
+            if (destination == null || !(destination.startsWith("/user/") || destination.startsWith("/topic/")
+                    || destination.startsWith("/app/"))) {
+                throw new AccessDeniedException("Subscribe to /user/queue/... instead of " + destination);
+            }
+        } else if (accessor.getCommand() == StompCommand.SEND) {
+            String destination = accessor.getDestination();
+            if (destination == null || !destination.startsWith("/app/")) {
+                throw new AccessDeniedException("Send to /app/... instead of " + destination);
+            }
+        }
+        return message;
+    }
+
+    private UsernamePasswordAuthenticationToken authenticate(String header) {
+        if (header == null || header.isBlank()) {
+            throw new BadCredentialsException("Missing Authorization header on CONNECT");
+        }
+        String token = header.startsWith("Bearer ") ? header.substring(7) : header;
+
+        try {
+            Claims claims = jwtUtil.parseToken(token).getBody();
+            JwtAuthenticationFilter.JwtUserPrincipal principal = new JwtAuthenticationFilter.JwtUserPrincipal(
+                    (String) claims.get("id"),
+                    (String) claims.get("role")
+            );
+            return new UsernamePasswordAuthenticationToken(principal, null, List.of());
+        } catch (JwtException e) {
+            throw new BadCredentialsException("Invalid token");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.zipnivasa.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-session payload codec for STOMP: JSON (default) or CBOR.
+ *
+ * A client asks for CBOR with the native header {@code accept-codec: cbor}
+ * on CONNECT. Only raw WebSocket sessions can get it, SockJS has no binary
+ * frames and stays on JSON. Frames to a CBOR session go out as binary
+ * WebSocket messages (see WebSocketConfig).
+ *
+ * Payloads are encoded once at the source when every session of the
+ * receiver uses the same codec; the outbound interceptor transcodes the
+ * rare mismatch (mixed devices, frames relayed from another node).
+ */
+@Component
+public class StompCodec {
+
+    public static final MimeType CBOR = MimeType.valueOf("application/cbor");
+
+    public static final String CODEC_HEADER = "accept-codec";
+
+    // set on the WebSocket session attributes of non-SockJS sessions
+    public static final String BINARY_CAPABLE_ATTR = "chat.binaryCapable";
+
+    private final ObjectMapper json;
+    private final ObjectMapper cbor;
+
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+
+    public StompCodec(ObjectMapper objectMapper) {
+        this.json = objectMapper;
+        this.cbor = CBORMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    public MappingJackson2MessageConverter cborConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(CBOR);
+        converter.setObjectMapper(cbor);
+        // without a content-type header JSON stays the default
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    // a fresh mutable accessor, SimpMessagingTemplate would turn a plain map into native headers
+    public MessageHeaders cborHeaders() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(CBOR);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    public boolean isBinary(String sessionId) {
+        return binarySessions.contains(sessionId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        binarySessions.remove(event.getSessionId());
+    }
+
+    // ------------------- INTERCEPTORS -----------------------
+    public ChannelInterceptor negotiation() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+                if (accessor.getCommand() != StompCommand.CONNECT) return message;
+
+                Map<String, Object> attributes = accessor.getSessionAttributes();
+                boolean capable = attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_CAPABLE_ATTR));
+
+                if (capable && "cbor".equalsIgnoreCase(accessor.getFirstNativeHeader(CODEC_HEADER))) {
+                    binarySessions.add(accessor.getSessionId());
+                }
+                return message;
+            }
+        };
+    }
+
+    public ChannelInterceptor transcoding() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                        || !(message.getPayload() instanceof byte[] payload)) {
+                    return message;
+                }
+
+                MimeType contentType = contentTypeOf(message);
+                if (contentType == null) return message;
+
+                boolean binary = isBinary(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+
+                if (binary && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+                    return transcode(message, payload, json, cbor, CBOR);
+                }
+                if (!binary && CBOR.isCompatibleWith(contentType)) {
+                    return transcode(message, payload, cbor, json, MimeTypeUtils.APPLICATION_JSON);
+                }
+                return message;
+            }
+        };
+    }
+
+    private Message<?> transcode(Message<?> message, byte[] payload,
+                                 ObjectMapper from, ObjectMapper to, MimeType target) {
+        try {
+            byte[] converted = to.writeValueAsBytes(from.readTree(payload));
+
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            accessor.setContentType(target);
+            return MessageBuilder.createMessage(converted, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            System.err.println("STOMP transcoding to " + target + " failed: " + e.getMessage());
+            return message;
+        }
+    }
+
+    private MimeType contentTypeOf(Message<?> message) {
+        Object value = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (value instanceof MimeType mimeType) return mimeType;
+        return value != null ? MimeType.valueOf(value.toString()) : null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.zipnivasa.backend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replaces @EnableWebSocketMessageBroker (the WebSocketMessageBrokerConfigurer
+ * beans, WebSocketConfig, are still picked up) to swap in a STOMP handler
+ * whose per-session send buffer follows chat.ws.slow-consumer-policy:
+ *
+ *  - terminate: a session over send-buffer-size-limit is closed (Spring's default)
+ *  - drop:      the oldest queued frames are discarded instead, only a send
+ *               blocked past send-time-limit-ms still closes the session
+ *
+ * That buffer is the ConcurrentWebSocketSessionDecorator the handler wraps
+ * every session in, so the strategy has to be applied there; a decorator
+ * further in never fills up. It is also where the outcomes are counted:
+ *
+ *  - chat.ws.evictions:     sessions closed for a send-time or buffer limit
+ *  - chat.ws.dropped.bytes: payload bytes discarded by the drop policy
+ */
+@Configuration(proxyBeanMethods = false)
+public class WebSocketBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Value("${chat.ws.slow-consumer-policy:terminate}")
+    private String slowConsumerPolicy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                       AbstractSubscribableChannel clientOutboundChannel) {
+
+        ConcurrentWebSocketSessionDecorator.OverflowStrategy overflow = "drop".equalsIgnoreCase(slowConsumerPolicy)
+                ? ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP
+                : ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE;
+
+        SubProtocolWebSocketHandler handler = new SlowConsumerHandler(clientInboundChannel, clientOutboundChannel, overflow,
+                meterRegistry.counter("chat.ws.evictions"), meterRegistry.counter("chat.ws.dropped.bytes"));
+        handler.setPhase(getPhase());
+        return handler;
+    }
+
+    static class SlowConsumerHandler extends SubProtocolWebSocketHandler {
+
+        private final ConcurrentWebSocketSessionDecorator.OverflowStrategy overflow;
+        private final Counter evictions;
+        private final Counter droppedBytes;
+
+        SlowConsumerHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                            ConcurrentWebSocketSessionDecorator.OverflowStrategy overflow,
+                            Counter evictions, Counter droppedBytes) {
+            super(clientInboundChannel, clientOutboundChannel);
+            this.overflow = overflow;
+            this.evictions = evictions;
+            this.droppedBytes = droppedBytes;
+        }
+
+        @Override
+        protected WebSocketSession decorateSession(WebSocketSession session) {
+            AtomicLong sentBytes = new AtomicLong();
+            WebSocketSession counting = new WebSocketSessionDecorator(session) {
+                @Override
+                public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                    super.sendMessage(message);
+                    sentBytes.addAndGet(message.getPayloadLength());
+                }
+            };
+            return new MeteredSessionDecorator(counting, getSendTimeLimit(), getSendBufferSizeLimit(), overflow, sentBytes);
+        }
+
+        /**
+         * Spring's decorator has no hook for a drop, so dropped bytes are what
+         * was accepted minus what reached the socket (counted by the session
+         * it wraps) minus what is still buffered. Each
+         * term lags behind concurrent senders in the direction that makes the
+         * difference too small, never too large, so the highest value seen is
+         * counted.
+         */
+        private final class MeteredSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+
+            private final AtomicBoolean evicted = new AtomicBoolean();
+            private final AtomicBoolean closing = new AtomicBoolean();
+            private final AtomicLong acceptedBytes = new AtomicLong();
+            private final AtomicLong sentBytes;
+            private final AtomicLong dropped = new AtomicLong();
+
+            // sentBytes: what session wrote to the socket
+            MeteredSessionDecorator(WebSocketSession session, int sendTimeLimit, int bufferSizeLimit,
+                                    OverflowStrategy overflow, AtomicLong sentBytes) {
+                super(session, sendTimeLimit, bufferSizeLimit, overflow);
+                this.sentBytes = sentBytes;
+            }
+
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                try {
+                    super.sendMessage(message);
+                } catch (SessionLimitExceededException e) {
+                    // thrown once, the session is closing; later sends are no-ops
+                    if (evicted.compareAndSet(false, true)) evictions.increment();
+                    throw e;
+                }
+                // a closing session ignores the message instead of buffering it
+                if (closing.get() || evicted.get()) return;
+                acceptedBytes.addAndGet(message.getPayloadLength());
+
+                if (getOverflowStrategy() == OverflowStrategy.DROP) {
+                    long seen = acceptedBytes.get() - sentBytes.get() - getBufferSize();
+                    long before = dropped.getAndAccumulate(seen, Math::max);
+                    if (seen > before) droppedBytes.increment(seen - before);
+                }
+            }
+
+            @Override
+            public void close(CloseStatus status) throws IOException {
+                closing.set(true);
+                super.close(status);
+            }
+        }
+    }
+}
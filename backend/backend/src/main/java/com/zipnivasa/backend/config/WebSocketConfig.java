@@ -1,26 +1,200 @@
 package com.zipnivasa.backend.config;
 
+import com.zipnivasa.backend.modules.chat.service.PresenceRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.*;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+// the broker itself is enabled by WebSocketBrokerConfig
 @Configuration
-@EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompCodec stompCodec;
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final WebSocketTransportMetrics transportMetrics;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final PresenceRegistry presenceRegistry;
+
+    // created by the broker configuration itself, hence lazy
+    @Autowired
+    @Lazy
+    @Qualifier("messageBrokerTaskScheduler")
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Value("${chat.ws.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${chat.ws.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${chat.ws.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${chat.ws.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${chat.ws.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${chat.ws.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${chat.ws.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.ws.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.ws.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    // STOMP heart-beat offered on CONNECTED: server → client, client → server
+    @Value("${chat.ws.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMs;
+
+    @Value("${chat.ws.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
 
-        config.enableSimpleBroker("/topic", "/queue");  // for broadcasting & private messaging
+        config.enableSimpleBroker("/topic", "/queue")  // for broadcasting & private messaging
+                .setHeartbeatValue(new long[]{serverHeartbeatMs, clientHeartbeatMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
 
         config.setApplicationDestinationPrefixes("/app");
+
+        // /user/queue/x → the principal's own sessions, see StompAuthInterceptor
+        config.setUserDestinationPrefix("/user");
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
 
+        // primary: raw WebSocket, no SockJS framing, needed for binary (CBOR) frames;
+        // Tomcat accepts permessage-deflate whenever the client offers it
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*");
+
+        // fallback for clients that cannot open a plain WebSocket (proxies, old browsers)
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
+
+    // JSON stays the default, CBOR is used when a frame carries content-type application/cbor
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(stompCodec.cborConverter());
+        return true;
+    }
+
+    // bounded pools: a full queue makes the caller run the task (backpressure)
+    // instead of piling frames up on the heap
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(boundedExecutor())
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+        registration.interceptors(stompAuthInterceptor, stompCodec.negotiation(), activityTracking());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(boundedExecutor())
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(stompCodec.transcoding());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+
+        // outermost: sees the raw session, so it can count it per transport, keep it
+        // closable by id, mark it binary-capable and turn the STOMP handler's text
+        // frames into binary ones for CBOR sessions
+        registration.addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                transportMetrics.opened(session);
+                sessionRegistry.opened(session);
+
+                if (session instanceof SockJsSession) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+
+                session.getAttributes().put(StompCodec.BINARY_CAPABLE_ATTR, true);
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                        if (message instanceof TextMessage text && stompCodec.isBinary(getId())) {
+                            // TextMessage keeps the encoder's original bytes
+                            message = new BinaryMessage(text.asBytes());
+                        }
+                        super.sendMessage(message);
+                    }
+                });
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                transportMetrics.closed(session);
+                sessionRegistry.closed(session);
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        });
+    }
+
+    // any inbound frame, heartbeats included, keeps the session off the presence reaper
+    private ChannelInterceptor activityTracking() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                if (sessionId != null) {
+                    presenceRegistry.touch(sessionId);
+                }
+                return message;
+            }
+        };
+    }
+
+    private ThreadPoolTaskExecutor boundedExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setKeepAliveSeconds(60);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
 }
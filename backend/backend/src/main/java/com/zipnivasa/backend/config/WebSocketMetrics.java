@@ -0,0 +1,34 @@
+package com.zipnivasa.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges for the STOMP channel pools. Slow-consumer evictions and drops
+ * are counted by WebSocketBrokerConfig, where the policy is applied.
+ */
+@Component
+public class WebSocketMetrics {
+
+    public WebSocketMetrics(
+            MeterRegistry meterRegistry,
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor
+    ) {
+        registerPool(meterRegistry, "inbound", inboundExecutor);
+        registerPool(meterRegistry, "outbound", outboundExecutor);
+    }
+
+    private void registerPool(MeterRegistry meterRegistry, String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("chat.ws.channel.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .tag("channel", channel)
+                .register(meterRegistry);
+
+        Gauge.builder("chat.ws.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel)
+                .register(meterRegistry);
+    }
+}
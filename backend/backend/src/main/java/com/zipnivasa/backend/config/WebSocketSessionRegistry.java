@@ -0,0 +1,40 @@
+package com.zipnivasa.backend.config;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open WebSocket sessions of this node by id (the STOMP session id), so
+ * code outside the STOMP handler can close one. Closing goes through the
+ * container, the handler then sees afterConnectionClosed and publishes
+ * the SessionDisconnectEvent as for any other close.
+ */
+@Component
+public class WebSocketSessionRegistry {
+
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public void opened(WebSocketSession session) {
+        sessions.put(session.getId(), session);
+    }
+
+    public void closed(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * @return false if no such session is open here
+     */
+    public boolean close(String sessionId, CloseStatus status) throws IOException {
+        WebSocketSession session = sessions.remove(sessionId);
+        if (session == null) return false;
+
+        session.close(status);
+        return true;
+    }
+}
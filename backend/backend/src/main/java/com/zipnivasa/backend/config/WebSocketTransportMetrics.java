@@ -0,0 +1,71 @@
+package com.zipnivasa.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open STOMP sessions per transport, as the gauge chat.ws.sessions with tags
+ * transport (native, sockjs-websocket, sockjs-xhr_streaming, ...) and
+ * compression (permessage-deflate / none).
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketTransportMetrics {
+
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicInteger> sessions = new ConcurrentHashMap<>();
+
+    // sessionId → gauge key, so close decrements what open incremented
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    public void opened(WebSocketSession session) {
+        String transport = transportOf(session);
+        String compression = session.getExtensions().stream()
+                .anyMatch(ext -> PERMESSAGE_DEFLATE.equalsIgnoreCase(ext.getName()))
+                ? PERMESSAGE_DEFLATE : "none";
+
+        String key = transport + "|" + compression;
+        keys.put(session.getId(), key);
+        sessions.computeIfAbsent(key, k -> register(transport, compression)).incrementAndGet();
+    }
+
+    public void closed(WebSocketSession session) {
+        String key = keys.remove(session.getId());
+        if (key != null) {
+            sessions.get(key).decrementAndGet();
+        }
+    }
+
+    private AtomicInteger register(String transport, String compression) {
+        AtomicInteger count = new AtomicInteger();
+        Gauge.builder("chat.ws.sessions", count, AtomicInteger::get)
+                .description("Open STOMP sessions")
+                .tag("transport", transport)
+                .tag("compression", compression)
+                .register(meterRegistry);
+        return count;
+    }
+
+    // SockJS urls end in /{server}/{session}/{transport}
+    private String transportOf(WebSocketSession session) {
+        if (!(session instanceof SockJsSession)) return "native";
+
+        URI uri = session.getUri();
+        if (uri == null || uri.getPath() == null) return "sockjs";
+
+        String path = uri.getPath();
+        return "sockjs-" + path.substring(path.lastIndexOf('/') + 1);
+    }
+}
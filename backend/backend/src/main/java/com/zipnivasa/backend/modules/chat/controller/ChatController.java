@@ -3,19 +3,29 @@ package com.zipnivasa.backend.modules.chat.controller;
 import com.zipnivasa.backend.common.payload.ApiResponse;
 import com.zipnivasa.backend.config.JwtAuthenticationFilter;
 import com.zipnivasa.backend.modules.chat.dto.SendMessageRequest;
+import com.zipnivasa.backend.modules.chat.service.ChatSearchService;
 import com.zipnivasa.backend.modules.chat.service.ChatService;
+import com.zipnivasa.backend.modules.chat.service.ChatSyncService;
+import com.zipnivasa.backend.modules.chat.service.ChatWebSocketService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/chat")
 @RequiredArgsConstructor
 public class ChatController {
 
     private final ChatService chatService;
+    private final ChatWebSocketService webSocketService;
+    private final ChatSyncService chatSyncService;
+    private final ChatSearchService chatSearchService;
 
     private String getUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -32,30 +42,77 @@ public class ChatController {
         );
     }
     @GetMapping("/history/{receiverId}")
-    public ResponseEntity<?> history(@PathVariable String receiverId) {
+    public ResponseEntity<?> history(@PathVariable String receiverId,
+                                     @RequestParam(required = false) Instant before,
+                                     @RequestParam(required = false) String beforeId,
+                                     @RequestParam(required = false) Instant after,
+                                     @RequestParam(required = false) String afterId,
+                                     @RequestParam(defaultValue = "50") int limit) {
         String me = getUserId();
         return ResponseEntity.ok(
-                ApiResponse.success("Messages fetched", chatService.getHistory(me, receiverId))
+                ApiResponse.success("Messages fetched",
+                        chatService.getHistory(me, receiverId, before, beforeId, after, afterId, limit))
         );
     }
 
     @GetMapping("/conversations")
-    public ResponseEntity<?> conversations() {
+    public ResponseEntity<?> conversations(@RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "20") int size) {
+        String me = getUserId();
+        return ResponseEntity.ok(
+                ApiResponse.success("Conversations fetched", chatService.getConversations(me, page, size))
+        );
+    }
+
+    @GetMapping("/online-users")
+    public ResponseEntity<?> onlineUsers() {
+        String me = getUserId();
+        return ResponseEntity.ok(
+                ApiResponse.success("Online users fetched", webSocketService.getOnlineContacts(me))
+        );
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam String q,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size) {
         String me = getUserId();
         return ResponseEntity.ok(
-                ApiResponse.success("Conversations fetched", chatService.getConversations(me))
+                ApiResponse.success("Search results fetched", chatSearchService.search(me, q, page, size))
+        );
+    }
+
+    // changes after the client's cursor; resync=true means reload the inbox and restart from the returned cursor
+    @GetMapping("/sync")
+    public ResponseEntity<?> sync(@RequestParam(defaultValue = "0") long cursor,
+                                  @RequestParam(defaultValue = "200") int limit) {
+        String me = getUserId();
+        return ResponseEntity.ok(
+                ApiResponse.success("Changes fetched", chatSyncService.getChanges(me, cursor, limit))
         );
     }
 
     @PostMapping("/mark-read")
     public ResponseEntity<?> markRead(@RequestBody(required = true)
-                                      java.util.Map<String, String> body) {
+                                      Map<String, String> body) {
 
         String partnerId = body.get("partnerId");
+        String upTo = body.get("upTo");
         String myId = getUserId();
 
-        chatService.markAsRead(myId, partnerId);
+        if (partnerId == null || partnerId.isBlank()) {
+            return ResponseEntity.badRequest().body(ApiResponse.failure("partnerId is required"));
+        }
+
+        Instant watermark;
+        try {
+            watermark = upTo != null ? Instant.parse(upTo) : null;
+        } catch (DateTimeParseException ex) {
+            return ResponseEntity.badRequest().body(ApiResponse.failure("Invalid upTo"));
+        }
+
+        long updated = chatService.markAsRead(myId, partnerId, watermark);
 
-        return ResponseEntity.ok(ApiResponse.success("Marked as read", null));
+        return ResponseEntity.ok(ApiResponse.success("Marked as read", Map.of("updated", updated)));
     }
 }
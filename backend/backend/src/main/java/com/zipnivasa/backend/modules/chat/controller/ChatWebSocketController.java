@@ -1,42 +1,95 @@
 package com.zipnivasa.backend.modules.chat.controller;
 
-import com.zipnivasa.backend.modules.chat.dto.MessageResponse;
+import com.zipnivasa.backend.modules.chat.dto.SendFailedEvent;
 import com.zipnivasa.backend.modules.chat.dto.SendMessageRequest;
+import com.zipnivasa.backend.modules.chat.dto.SyncResponse;
 import com.zipnivasa.backend.modules.chat.service.ChatService;
+import com.zipnivasa.backend.modules.chat.service.ChatSyncService;
 import com.zipnivasa.backend.modules.chat.service.ChatWebSocketService;
+import com.zipnivasa.backend.modules.chat.service.TypingIndicatorService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
 import org.springframework.messaging.handler.annotation.*;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.Set;
+
 @Controller
 @RequiredArgsConstructor
 public class ChatWebSocketController {
 
     private final ChatService chatService;
     private final ChatWebSocketService webSocketService;
+    private final TypingIndicatorService typingIndicatorService;
+    private final ChatSyncService chatSyncService;
 
     @MessageMapping("/chat/send")
-    public void sendMessage(@Payload SendMessageRequest req,
-                            @Header("user-id") String senderId) {
+    public void sendMessage(@Payload SendMessageRequest req, Principal principal) {
+
+        String senderId = principal.getName();
+
+        // delivered before it is durable, sender gets a DeliveryAckEvent later
+        ChatService.SendResult sent;
+        try {
+            sent = chatService.sendAsync(senderId, req);
+        } catch (DataAccessException e) {
+            // the pipeline was full and the direct write failed too
+            webSocketService.sendError(senderId, SendFailedEvent.builder()
+                    .clientMessageId(req.getClientMessageId())
+                    .receiver(req.getReceiver())
+                    .reason("Message could not be saved, try again")
+                    .build());
+            return;
+        }
+
+        // a retry, also one racing the original: hand the original back to the sender only
+        if (sent.duplicate()) {
+            webSocketService.sendPrivateMessage(senderId, sent.response());
+            return;
+        }
+
+        // a sent message ends the typing state of this pair
+        typingIndicatorService.onStopTyping(senderId, req.getReceiver());
 
-        MessageResponse saved = chatService.send(senderId, req);
+        webSocketService.sendPrivateMessage(req.getReceiver(), sent.response());
+
+        webSocketService.sendPrivateMessage(senderId, sent.response());
+    }
+
+    // one-off reply to the subscriber, deltas follow on /user/queue/presence
+    @SubscribeMapping("/presence/snapshot")
+    public Set<String> presenceSnapshot(Principal principal) {
+        return webSocketService.getOnlineContacts(principal.getName());
+    }
 
-        webSocketService.sendPrivateMessage(req.getReceiver(), saved);
+    // streams every page after the cursor to /user/queue/sync, the last one has hasMore=false
+    @MessageMapping("/chat/sync")
+    public void sync(Principal principal,
+                     @Header(name = "cursor", defaultValue = "0") long cursor,
+                     @Header(name = "limit", defaultValue = "200") int limit) {
 
-        webSocketService.sendPrivateMessage(senderId, saved);
+        String userId = principal.getName();
+        SyncResponse page;
+        do {
+            page = chatSyncService.getChanges(userId, cursor, limit);
+            webSocketService.sendSyncPage(userId, page);
+            cursor = page.getCursor();
+        } while (page.isHasMore() && !page.getChanges().isEmpty());
     }
 
     @MessageMapping("/chat/typing")
-    public void typing(@Header("user-id") String sender,
+    public void typing(Principal principal,
                        @Header("receiver-id") String receiver) {
 
-        webSocketService.sendTyping(receiver, sender);
+        typingIndicatorService.onTyping(principal.getName(), receiver);
     }
 
     @MessageMapping("/chat/stop-typing")
-    public void stopTyping(@Header("user-id") String sender,
+    public void stopTyping(Principal principal,
                            @Header("receiver-id") String receiver) {
 
-        webSocketService.sendStopTyping(receiver, sender);
+        typingIndicatorService.onStopTyping(principal.getName(), receiver);
     }
 }
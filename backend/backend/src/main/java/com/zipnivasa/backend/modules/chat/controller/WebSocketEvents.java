@@ -2,26 +2,38 @@ package com.zipnivasa.backend.modules.chat.controller;
 
 import com.zipnivasa.backend.modules.chat.service.ChatWebSocketService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.*;
 
+import java.security.Principal;
+
 @Component
 @RequiredArgsConstructor
 public class WebSocketEvents {
 
     private final ChatWebSocketService chatWebSocketService;
 
+    // what the broker asks of clients, see WebSocketConfig
+    @Value("${chat.ws.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs;
+
     @EventListener
     public void handleSessionConnected(SessionConnectEvent event) {
         StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
 
-        String userId = accessor.getFirstNativeHeader("user-id");
+        // bound by StompAuthInterceptor from the CONNECT token
+        Principal user = event.getUser();
         String sessionId = accessor.getSessionId();
 
-        if (userId != null) {
-            chatWebSocketService.registerUser(userId, sessionId);
+        // STOMP heart-beat: the client sends every max(its cx, our ask), 0 = never
+        long clientSends = accessor.getHeartbeat()[0];
+        long heartbeatMs = clientSends > 0 && clientHeartbeatMs > 0 ? Math.max(clientSends, clientHeartbeatMs) : 0;
+
+        if (user != null) {
+            chatWebSocketService.registerUser(user.getName(), sessionId, heartbeatMs);
         }
     }
 
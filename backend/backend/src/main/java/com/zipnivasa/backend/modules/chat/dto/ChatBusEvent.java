@@ -0,0 +1,46 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Envelope exchanged between chat nodes over the ChatMessageBus.
+ *
+ * DELIVER  - frame for a user connected to another node (already serialized)
+ * PRESENCE - a user's first session opened / last session closed on origin
+ * SNAPSHOT - every user connected to origin, sent periodically and on SYNC
+ * SYNC     - a node just started and asks the others for a SNAPSHOT
+ * CONTACT  - userId and partner just exchanged a message, watchers elsewhere link them
+ *
+ * An event without a type is a bus-internal marker, never dispatched.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatBusEvent {
+
+    public enum Type { DELIVER, PRESENCE, SNAPSHOT, SYNC, CONTACT }
+
+    private Type type;
+    private String origin;
+    private Instant at;
+
+    private String userId;
+
+    // DELIVER
+    private String destination;
+    private byte[] body;
+    private String contentType;
+
+    // PRESENCE
+    private Boolean online;
+
+    // SNAPSHOT
+    private List<String> users;
+
+    // CONTACT
+    private String partner;
+}
@@ -0,0 +1,21 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sent to the sender once the listed messages are durable in Mongo.
+ * duplicates maps the id of a resend that was dropped to the id of the
+ * earlier message with the same clientMessageId, listed in messageIds.
+ */
+@Data
+@Builder
+public class DeliveryAckEvent {
+    private List<String> messageIds;
+    private Map<String, String> duplicates;
+    private Instant persistedAt;
+}
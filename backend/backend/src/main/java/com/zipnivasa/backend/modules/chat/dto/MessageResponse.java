@@ -1,5 +1,6 @@
 package com.zipnivasa.backend.modules.chat.dto;
 
+import com.zipnivasa.backend.modules.chat.model.Message;
 import lombok.Builder;
 import lombok.Data;
 
@@ -14,4 +15,17 @@ public class MessageResponse {
     private String message;
     private Instant createdAt;
     private Instant readAt;
+    private String clientMessageId;
+
+    public static MessageResponse of(Message m) {
+        return MessageResponse.builder()
+                .id(m.getId())
+                .sender(m.getSender())
+                .receiver(m.getReceiver())
+                .message(m.getMessage())
+                .createdAt(m.getCreatedAt())
+                .readAt(m.getReadAt())
+                .clientMessageId(m.getClientMessageId())
+                .build();
+    }
 }
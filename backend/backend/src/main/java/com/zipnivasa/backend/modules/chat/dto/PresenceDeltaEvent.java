@@ -0,0 +1,19 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Net presence changes over one coalescing window.
+ * Clients apply it on top of the snapshot from /app/presence/snapshot.
+ */
+@Data
+@Builder
+public class PresenceDeltaEvent {
+    private List<String> joined;
+    private List<String> left;
+    private Instant at;
+}
@@ -0,0 +1,19 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Pushed to the original sender once per mark-read call:
+ * every message from sender → reader created at or before upTo is read.
+ */
+@Data
+@Builder
+public class ReadReceiptEvent {
+    private String reader;
+    private Instant upTo;
+    private Instant readAt;
+    private long count;
+}
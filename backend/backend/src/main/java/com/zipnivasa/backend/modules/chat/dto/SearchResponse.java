@@ -0,0 +1,18 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of search hits. truncated means more postings matched than the
+ * search considers, only the newest ones were ranked and older matches
+ * are missing; the client should ask for a more specific query.
+ */
+@Data
+@Builder
+public class SearchResponse {
+    private List<SearchResult> results;
+    private boolean truncated;
+}
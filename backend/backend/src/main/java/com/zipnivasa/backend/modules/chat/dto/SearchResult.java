@@ -0,0 +1,17 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A search hit. snippet is HTML-escaped text around the first match
+ * with every matched term wrapped in <mark>.
+ */
+@Data
+@Builder
+public class SearchResult {
+    private MessageResponse message;
+    private String partnerId;
+    private String snippet;
+    private int matchedTerms;
+}
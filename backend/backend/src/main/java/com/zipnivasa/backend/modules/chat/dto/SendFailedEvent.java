@@ -0,0 +1,17 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Sent to the sender on /user/queue/errors when a message could not be
+ * persisted. Nothing was delivered; the client may retry with the same
+ * clientMessageId.
+ */
+@Data
+@Builder
+public class SendFailedEvent {
+    private String clientMessageId;
+    private String receiver;
+    private String reason;
+}
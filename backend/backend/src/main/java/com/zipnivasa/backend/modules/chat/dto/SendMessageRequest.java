@@ -6,4 +6,7 @@ import lombok.Data;
 public class SendMessageRequest {
     private String receiver;
     private String message;
+
+    // optional, generated by the client once per message and reused on retries
+    private String clientMessageId;
 }
@@ -0,0 +1,21 @@
+package com.zipnivasa.backend.modules.chat.dto;
+
+import com.zipnivasa.backend.modules.chat.model.ChatChange;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of changes after the client's cursor.
+ * cursor is the seq to send next time; resync means the log no longer
+ * reaches back to the old cursor and the client should reload from scratch.
+ */
+@Data
+@Builder
+public class SyncResponse {
+    private List<ChatChange> changes;
+    private long cursor;
+    private boolean hasMore;
+    private boolean resync;
+}
@@ -0,0 +1,63 @@
+package com.zipnivasa.backend.modules.chat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Per-user change log entry for offline sync.
+ * seq is monotonic per user (see ChatSequence); clients keep the last
+ * seq they applied and ask for everything after it.
+ */
+@Document(collection = "chat_changes")
+@CompoundIndex(name = "userId_seq", def = "{'userId': 1, 'seq': 1}", unique = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatChange {
+
+    public enum Type { MESSAGE, READ, CONVERSATION }
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    private long seq;
+
+    private Type type;
+
+    // the other participant of the affected conversation
+    private String partner;
+
+    // MESSAGE
+    private MessageData message;
+
+    // READ: every message reader ← partner / partner ← reader up to readUpTo is read
+    private String reader;
+    private Instant readUpTo;
+    private Instant readAt;
+
+    // CONVERSATION: partner's profile changed
+    private Conversation.PartnerSnapshot partnerSnapshot;
+
+    @Indexed(expireAfter = "30d")
+    private Instant createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MessageData {
+        private String id;
+        private String sender;
+        private String receiver;
+        private String message;
+        private Instant createdAt;
+        private Instant readAt;
+    }
+}
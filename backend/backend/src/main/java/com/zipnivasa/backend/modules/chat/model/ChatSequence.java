@@ -0,0 +1,21 @@
+package com.zipnivasa.backend.modules.chat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Last ChatChange.seq handed out per user (_id = User._id).
+ */
+@Document(collection = "chat_sequences")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSequence {
+
+    @Id
+    private String id;
+
+    private long seq;
+}
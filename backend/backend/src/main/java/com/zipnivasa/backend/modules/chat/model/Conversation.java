@@ -0,0 +1,73 @@
+package com.zipnivasa.backend.modules.chat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One inbox row per (owner, partner) pair.
+ * Kept up to date by ChatService on send / mark-read, so the inbox
+ * is a single indexed read instead of a scan over all messages.
+ */
+@Document(collection = "conversations")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_partner", def = "{'owner': 1, 'partner': 1}", unique = true),
+        @CompoundIndex(name = "owner_updatedAt", def = "{'owner': 1, 'updatedAt': -1}")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation {
+
+    @Id
+    private String id;
+
+    // inbox owner = User._id
+    private String owner;
+
+    // the other participant = User._id
+    private String partner;
+
+    private LastMessage lastMessage;
+
+    @Builder.Default
+    private Long unreadCount = 0L;
+
+    // name / phone / role of partner, refreshed on profile update
+    private PartnerSnapshot partnerSnapshot;
+
+    private Instant updatedAt;
+
+    // createdAt of the newest message of this pair in the archive, null if nothing is archived
+    private Instant archivedUpTo;
+
+    // the owner's newest mark-read watermark, for messages persisted after it
+    private Instant readUpTo;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LastMessage {
+        private String id;
+        private String sender;
+        private String receiver;
+        private String message;
+        private Instant createdAt;
+        private Instant readAt;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartnerSnapshot {
+        private String id;
+        private String name;
+        private String phone;
+        private String role;
+    }
+}
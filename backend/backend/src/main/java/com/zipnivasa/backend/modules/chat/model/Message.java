@@ -2,12 +2,19 @@ package com.zipnivasa.backend.modules.chat.model;
 
 import lombok.*;
 import org.springframework.data.annotation.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 
 @Document(collection = "messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "conversationKey_createdAt", def = "{'conversationKey': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "sender_clientMessageId", def = "{'sender': 1, 'clientMessageId': 1}",
+                unique = true, partialFilter = "{'clientMessageId': {'$exists': true}}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -23,10 +30,20 @@ public class Message {
     @Indexed
     private String receiver;
 
+    // same value for both directions of a chat, see conversationKeyOf
+    private String conversationKey;
+
     private String message;
 
+    // client-generated id for retry dedupe, unique per sender
+    private String clientMessageId;
+
     private Instant readAt;
 
     @CreatedDate
     private Instant createdAt;
+
+    public static String conversationKeyOf(String a, String b) {
+        return a.compareTo(b) <= 0 ? a + ":" + b : b + ":" + a;
+    }
 }
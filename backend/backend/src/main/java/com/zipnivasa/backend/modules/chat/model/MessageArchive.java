@@ -0,0 +1,63 @@
+package com.zipnivasa.backend.modules.chat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A bucket of up to chat.archive.bucket-size cold messages of one
+ * conversation, oldest first. Entries use one-letter field names and
+ * leave out receiver / conversationKey, which follow from the bucket.
+ */
+@Document(collection = "message_archives")
+@CompoundIndexes({
+        @CompoundIndex(name = "conversationKey_to", def = "{'conversationKey': 1, 'to': -1}"),
+        @CompoundIndex(name = "conversationKey_from", def = "{'conversationKey': 1, 'from': 1}"),
+        @CompoundIndex(name = "messages_id", def = "{'m.i': 1}")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageArchive {
+
+    @Id
+    private String id;
+
+    private String conversationKey;
+
+    // createdAt of the oldest / newest entry
+    private Instant from;
+    private Instant to;
+
+    private int count;
+
+    @Field("m")
+    private List<Entry> messages;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        @Field("i")
+        private String messageId;
+
+        @Field("s")
+        private String sender;
+
+        @Field("t")
+        private String message;
+
+        @Field("c")
+        private Instant createdAt;
+
+        @Field("r")
+        private Instant readAt;
+    }
+}
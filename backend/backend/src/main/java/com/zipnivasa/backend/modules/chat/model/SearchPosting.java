@@ -0,0 +1,34 @@
+package com.zipnivasa.backend.modules.chat.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One (message, term) pair of the chat search index.
+ * _id = messageId + ":" + term, so re-indexing a message is idempotent.
+ * participants holds sender and receiver, one posting serves both inboxes.
+ */
+@Document(collection = "chat_search")
+@CompoundIndex(name = "participants_term_createdAt", def = "{'participants': 1, 'term': 1, 'createdAt': -1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPosting {
+
+    @Id
+    private String id;
+
+    private List<String> participants;
+
+    private String term;
+
+    private String messageId;
+
+    private Instant createdAt;
+}
@@ -0,0 +1,14 @@
+package com.zipnivasa.backend.modules.chat.repository;
+
+import com.zipnivasa.backend.modules.chat.model.ChatChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface ChatChangeRepository extends MongoRepository<ChatChange, String> {
+
+    List<ChatChange> findByUserIdAndSeqGreaterThanOrderBySeqAsc(String userId, long seq, Pageable pageable);
+
+    boolean existsByUserIdAndSeqLessThanEqual(String userId, long seq);
+}
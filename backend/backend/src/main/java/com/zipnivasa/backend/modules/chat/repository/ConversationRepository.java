@@ -0,0 +1,12 @@
+package com.zipnivasa.backend.modules.chat.repository;
+
+import com.zipnivasa.backend.modules.chat.model.Conversation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+public interface ConversationRepository extends MongoRepository<Conversation, String> {
+
+    List<Conversation> findByOwnerOrderByUpdatedAtDesc(String owner, Pageable pageable);
+}
@@ -3,14 +3,9 @@ package com.zipnivasa.backend.modules.chat.repository;
 import com.zipnivasa.backend.modules.chat.model.Message;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-import java.util.List;
+import java.util.Optional;
 
 public interface MessageRepository extends MongoRepository<Message, String> {
 
-    List<Message> findBySenderAndReceiverOrderByCreatedAtAsc(String sender, String receiver);
-    List<Message> findByReceiverAndSenderOrderByCreatedAtAsc(String receiver, String sender);
-
-    List<Message> findBySenderOrReceiverOrderByCreatedAtDesc(String sender, String receiver);
-
-    List<Message> findBySenderAndReceiverAndReadAtIsNull(String sender, String receiver);
+    Optional<Message> findBySenderAndClientMessageId(String sender, String clientMessageId);
 }
@@ -0,0 +1,269 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.model.Conversation;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import com.zipnivasa.backend.modules.chat.model.MessageArchive;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Cold tier for chat history.
+ *
+ * Messages older than chat.archive.after-days are moved out of the hot
+ * "messages" collection into per-conversation MessageArchive buckets,
+ * so the hot indexes only cover recent traffic. getHistory reads both
+ * tiers through findBefore / findAfter.
+ *
+ * Only read messages are archived: markAsRead and the unreadCount it
+ * lowers only see the hot collection, so unread ones stay hot until read.
+ * A bucket is written before its messages are deleted, so a crash in
+ * between leaves a message in both tiers; readers drop the duplicate.
+ * Both conversation rows of the pair carry archivedUpTo, so history
+ * only reads the archive for conversations that have one.
+ */
+@Service
+public class ChatArchiveService {
+
+    // history order: createdAt, then id for messages in the same millisecond
+    static final Comparator<Message> OLDEST_FIRST =
+            Comparator.comparing(Message::getCreatedAt).thenComparing(Message::getId);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final boolean enabled;
+    private final Duration archiveAfter;
+    private final int bucketSize;
+    private final int maxPerRun;
+
+    public ChatArchiveService(
+            MongoTemplate mongoTemplate,
+            @Value("${chat.archive.enabled:true}") boolean enabled,
+            @Value("${chat.archive.after-days:90}") long afterDays,
+            @Value("${chat.archive.bucket-size:200}") int bucketSize,
+            @Value("${chat.archive.max-per-run:50000}") int maxPerRun
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.archiveAfter = Duration.ofDays(afterDays);
+        this.bucketSize = bucketSize;
+        this.maxPerRun = maxPerRun;
+    }
+
+    // everything in the archive is older than this
+    public Instant horizon() {
+        return Instant.now().minus(archiveAfter);
+    }
+
+    // ------------------- ARCHIVAL -----------------------
+    @Scheduled(fixedDelayString = "${chat.archive.interval-ms:3600000}",
+            initialDelayString = "${chat.archive.initial-delay-ms:60000}")
+    public void archive() {
+        if (!enabled) return;
+
+        Query cold = new Query(where("conversationKey").exists(true).and("createdAt").lt(horizon())
+                .and("readAt").ne(null))
+                .with(Sort.by(Sort.Direction.ASC, "conversationKey").and(Sort.by(Sort.Direction.DESC, "createdAt")))
+                .limit(maxPerRun);
+
+        List<Message> chunk = new ArrayList<>(bucketSize);
+        long archived = 0;
+
+        try (Stream<Message> messages = mongoTemplate.stream(cold, Message.class)) {
+            Iterator<Message> it = messages.iterator();
+            while (it.hasNext()) {
+                Message m = it.next();
+
+                if (!chunk.isEmpty() && !chunk.get(0).getConversationKey().equals(m.getConversationKey())) {
+                    archived += writeBucket(chunk);
+                }
+                chunk.add(m);
+                if (chunk.size() == bucketSize) {
+                    archived += writeBucket(chunk);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Chat archival stopped: " + e.getMessage());
+        }
+        archived += writeBucket(chunk);
+
+        if (archived > 0) {
+            System.out.println("Archived " + archived + " chat messages");
+        }
+    }
+
+    // chunk is one conversation, newest first
+    private int writeBucket(List<Message> chunk) {
+        if (chunk.isEmpty()) return 0;
+
+        List<Message> ordered = new ArrayList<>(chunk);
+        Collections.reverse(ordered);
+
+        List<MessageArchive.Entry> entries = new ArrayList<>(ordered.size());
+        List<String> ids = new ArrayList<>(ordered.size());
+        for (Message m : ordered) {
+            entries.add(new MessageArchive.Entry(m.getId(), m.getSender(), m.getMessage(), m.getCreatedAt(), m.getReadAt()));
+            ids.add(m.getId());
+        }
+
+        MessageArchive bucket = MessageArchive.builder()
+                .id(ordered.get(0).getConversationKey() + ":" + ordered.get(0).getId())
+                .conversationKey(ordered.get(0).getConversationKey())
+                .from(ordered.get(0).getCreatedAt())
+                .to(ordered.get(ordered.size() - 1).getCreatedAt())
+                .count(entries.size())
+                .messages(entries)
+                .build();
+
+        try {
+            mongoTemplate.insert(bucket);
+        } catch (DuplicateKeyException e) {
+            // written by a run that died before deleting the hot copies
+        }
+        markArchived(bucket.getConversationKey(), bucket.getTo());
+
+        mongoTemplate.remove(new Query(where("_id").in(ids)), Message.class);
+
+        chunk.clear();
+        return ids.size();
+    }
+
+    // before the hot copies go, a reader must never miss them in both tiers
+    void markArchived(String conversationKey, Instant upTo) {
+        String[] parties = conversationKey.split(":", 2);
+        mongoTemplate.updateMulti(
+                new Query(new Criteria().orOperator(
+                        where("owner").is(parties[0]).and("partner").is(parties[1]),
+                        where("owner").is(parties[1]).and("partner").is(parties[0]))),
+                new Update().max("archivedUpTo", upTo),
+                Conversation.class
+        );
+    }
+
+    // ------------------- READ -----------------------
+    /** The newest archived createdAt of the owner's conversation with partner, null if none. */
+    public Instant archivedUpTo(String owner, String partner) {
+        Query query = new Query(where("owner").is(owner).and("partner").is(partner));
+        query.fields().include("archivedUpTo");
+
+        Conversation row = mongoTemplate.findOne(query, Conversation.class);
+        return row != null ? row.getArchivedUpTo() : null;
+    }
+
+    /**
+     * Up to limit archived messages before (before, beforeId) in history
+     * order (before = null → newest), newest first. A null id only compares createdAt.
+     */
+    public List<Message> findBefore(String conversationKey, Instant before, String beforeId, int limit) {
+        Criteria criteria = where("conversationKey").is(conversationKey);
+        if (before != null) {
+            criteria = beforeId != null ? criteria.and("from").lte(before) : criteria.and("from").lt(before);
+        }
+
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "to"));
+
+        return collect(query, limit, OLDEST_FIRST.reversed(),
+                e -> before == null || compare(e, before, beforeId) < 0,
+                (bucket, bound) -> bucket.getTo().isBefore(bound));
+    }
+
+    /** Up to limit archived messages after (after, afterId) in history order, oldest first. */
+    public List<Message> findAfter(String conversationKey, Instant after, String afterId, int limit) {
+        Criteria criteria = where("conversationKey").is(conversationKey);
+        criteria = afterId != null ? criteria.and("to").gte(after) : criteria.and("to").gt(after);
+
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "from"));
+
+        return collect(query, limit, OLDEST_FIRST,
+                e -> compare(e, after, afterId) > 0,
+                (bucket, bound) -> bucket.getFrom().isAfter(bound));
+    }
+
+    private static int compare(MessageArchive.Entry e, Instant at, String atId) {
+        int c = e.getCreatedAt().compareTo(at);
+        if (c != 0 || atId == null) return c;
+        return e.getMessageId().compareTo(atId);
+    }
+
+    // search hits whose message has moved out of the hot collection
+    public List<Message> findByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        Set<String> wanted = new HashSet<>(ids);
+        List<Message> found = new ArrayList<>();
+
+        for (MessageArchive bucket : mongoTemplate.find(
+                new Query(where("messages.messageId").in(wanted)), MessageArchive.class)) {
+            for (MessageArchive.Entry e : bucket.getMessages()) {
+                if (wanted.remove(e.getMessageId())) {
+                    found.add(toMessage(bucket, e));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Walks buckets in query order and stops once limit messages are
+     * collected and the next bucket cannot contain a closer one.
+     */
+    private List<Message> collect(Query query, int limit, Comparator<Message> order,
+                                  Predicate<MessageArchive.Entry> inRange,
+                                  BiPredicate<MessageArchive, Instant> beyond) {
+
+        Map<String, Message> byId = new HashMap<>();
+        List<Message> result = new ArrayList<>();
+
+        try (Stream<MessageArchive> buckets = mongoTemplate.stream(query, MessageArchive.class)) {
+            Iterator<MessageArchive> it = buckets.iterator();
+            while (it.hasNext()) {
+                MessageArchive bucket = it.next();
+
+                if (result.size() >= limit && beyond.test(bucket, result.get(limit - 1).getCreatedAt())) {
+                    break;
+                }
+
+                for (MessageArchive.Entry e : bucket.getMessages()) {
+                    if (inRange.test(e)) {
+                        byId.putIfAbsent(e.getMessageId(), toMessage(bucket, e));
+                    }
+                }
+
+                result = new ArrayList<>(byId.values());
+                result.sort(order);
+            }
+        }
+
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private Message toMessage(MessageArchive bucket, MessageArchive.Entry e) {
+        String[] parties = bucket.getConversationKey().split(":", 2);
+        String receiver = parties[0].equals(e.getSender()) ? parties[1] : parties[0];
+
+        return Message.builder()
+                .id(e.getMessageId())
+                .sender(e.getSender())
+                .receiver(receiver)
+                .conversationKey(bucket.getConversationKey())
+                .message(e.getMessage())
+                .createdAt(e.getCreatedAt())
+                .readAt(e.getReadAt())
+                .build();
+    }
+}
@@ -0,0 +1,188 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.model.Message;
+import com.zipnivasa.backend.modules.chat.model.MessageArchive;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * One-time upgrades for databases that already contain messages from
+ * before the chat indexes existed:
+ *  - sets Message.conversationKey on old messages
+ *  - builds the conversations collection
+ *  - builds the chat search index
+ *  - sets Conversation.archivedUpTo for conversations archived before it existed
+ *
+ * The conversations and search steps stream messages in _id order and record progress in
+ * chat_backfills, so an interrupted run resumes where it stopped and a
+ * finished one is never repeated. Both steps are idempotent, a batch
+ * applied twice does no harm.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatIndexBackfill implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String PROGRESS = "chat_backfills";
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationIndexService conversationIndexService;
+    private final ChatSearchService chatSearchService;
+    private final ChatArchiveService chatArchiveService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfillConversationKeys();
+        backfillConversations();
+        backfillSearchIndex();
+        backfillArchiveMarkers();
+    }
+
+    private void backfillConversationKeys() {
+        Query missing = new Query(where("conversationKey").exists(false));
+        missing.fields().include("sender", "receiver");
+
+        AtomicLong processed = new AtomicLong();
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (Stream<Message> messages = mongoTemplate.stream(missing, Message.class)) {
+            messages.forEach(m -> {
+                batch.add(m);
+                if (batch.size() == BATCH_SIZE) {
+                    processed.addAndGet(writeKeys(batch));
+                }
+            });
+        }
+        processed.addAndGet(writeKeys(batch));
+
+        if (processed.get() > 0) {
+            System.out.println("Conversation keys set on " + processed.get() + " messages");
+        }
+    }
+
+    private int writeKeys(List<Message> batch) {
+        if (batch.isEmpty()) return 0;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+        for (Message m : batch) {
+            ops.updateOne(
+                    new Query(where("_id").is(m.getId())),
+                    new Update().set("conversationKey", Message.conversationKeyOf(m.getSender(), m.getReceiver()))
+            );
+        }
+        ops.execute();
+
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    // rows first, then every unreadCount from the unread messages
+    private void backfillConversations() {
+        if (isDone("conversations")) return;
+
+        long processed = forEachBatch("conversations", conversationIndexService::applyLastMessages);
+        conversationIndexService.recountUnread();
+        markDone("conversations");
+
+        if (processed > 0) {
+            System.out.println("Conversation index built from " + processed + " messages");
+        }
+    }
+
+    private void backfillSearchIndex() {
+        if (isDone("search")) return;
+
+        long processed = forEachBatch("search", chatSearchService::index);
+        markDone("search");
+
+        if (processed > 0) {
+            System.out.println("Chat search index built from " + processed + " messages");
+        }
+    }
+
+    // after the rows exist; newer buckets set the marker themselves
+    private void backfillArchiveMarkers() {
+        if (isDone("archive-markers")) return;
+
+        Aggregation newest = Aggregation.newAggregation(
+                Aggregation.group("conversationKey").max("to").as("to")
+        );
+
+        AtomicLong processed = new AtomicLong();
+        try (Stream<Document> buckets = mongoTemplate.aggregateStream(newest, MessageArchive.class, Document.class)) {
+            buckets.forEach(d -> {
+                chatArchiveService.markArchived(d.getString("_id"), d.getDate("to").toInstant());
+                processed.incrementAndGet();
+            });
+        }
+        markDone("archive-markers");
+
+        if (processed.get() > 0) {
+            System.out.println("Archive markers set on " + processed.get() + " conversations");
+        }
+    }
+
+    // every message after the saved position, BATCH_SIZE at a time
+    private long forEachBatch(String name, Consumer<List<Message>> step) {
+        Document progress = mongoTemplate.findById(name, Document.class, PROGRESS);
+        Object after = progress != null ? progress.get("after") : null;
+
+        Query query = after != null ? new Query(where("_id").gt(after)) : new Query();
+        query.with(Sort.by(Sort.Direction.ASC, "_id"));
+
+        AtomicLong processed = new AtomicLong();
+        List<Message> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (Stream<Message> messages = mongoTemplate.stream(query, Message.class)) {
+            messages.forEach(m -> {
+                batch.add(m);
+                if (batch.size() == BATCH_SIZE) {
+                    processed.addAndGet(apply(name, step, batch));
+                }
+            });
+        }
+        processed.addAndGet(apply(name, step, batch));
+        return processed.get();
+    }
+
+    private int apply(String name, Consumer<List<Message>> step, List<Message> batch) {
+        if (batch.isEmpty()) return 0;
+
+        step.accept(batch);
+        mongoTemplate.upsert(
+                new Query(where("_id").is(name)),
+                new Update().set("after", batch.get(batch.size() - 1).getId()),
+                PROGRESS
+        );
+
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    private boolean isDone(String name) {
+        return mongoTemplate.exists(new Query(where("_id").is(name).and("done").is(true)), PROGRESS);
+    }
+
+    private void markDone(String name) {
+        mongoTemplate.upsert(new Query(where("_id").is(name)), new Update().set("done", true), PROGRESS);
+    }
+}
@@ -0,0 +1,417 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead journal for chat sends.
+ *
+ * Messages are appended to memory-mapped segment files before they are
+ * handed to the MessagePersistencePipeline, so a send only costs a memory
+ * copy and survives a process crash while Mongo is slow or failing over.
+ *
+ * - record = [int length][long seq][int crc32][json Message]
+ * - segments are named after the seq of their first record and are
+ *   segment-bytes long (zero-filled, length 0 marks the end)
+ * - the checkpoint file holds the highest seq below which every record
+ *   is in Mongo; it only moves over a contiguous run of persisted seqs
+ * - on startup everything after the checkpoint is replayed, the pipeline
+ *   drops duplicates by message id
+ * - dirty pages are forced every force-interval-ms, so an OS crash can
+ *   lose at most that window; a process crash loses nothing
+ *
+ * Off by default. When on, dir must be absolute and is locked for the
+ * process lifetime: a second process on the same dir fails at startup
+ * instead of appending to and replaying the same segments.
+ */
+@Component
+public class ChatJournal {
+
+    private static final int HEADER_BYTES = 4 + 8 + 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String LOCK_FILE = "lock";
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long forceIntervalMs;
+
+    // start seq → segment file
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long nextSeq = 1;
+
+    private MappedByteBuffer checkpointBuffer;
+    private volatile long checkpoint;
+
+    // seqs persisted out of order, waiting for the gap below them to close
+    private final ConcurrentSkipListSet<Long> persistedAhead = new ConcurrentSkipListSet<>();
+    // message id → seq of appended / replayed records not yet in Mongo
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService forcer;
+
+    private FileChannel lockChannel;
+
+    public ChatJournal(ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${chat.journal.enabled:false}") boolean enabled,
+                       @Value("${chat.journal.dir:}") String dir,
+                       @Value("${chat.journal.segment-bytes:67108864}") int segmentBytes,
+                       @Value("${chat.journal.force-interval-ms:10}") long forceIntervalMs) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.segmentBytes = segmentBytes;
+        this.forceIntervalMs = forceIntervalMs;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) return;
+
+        if (!dir.isAbsolute()) {
+            throw new IllegalStateException("chat.journal.dir must be an absolute path when the journal is enabled");
+        }
+        Files.createDirectories(dir);
+        lock();
+
+        try (FileChannel ch = FileChannel.open(dir.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkpointBuffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        }
+        checkpoint = checkpointBuffer.getLong(0);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(p -> segments.put(startSeqOf(p), p));
+        }
+
+        if (segments.isEmpty()) {
+            roll(checkpoint + 1);
+        } else {
+            reopenLast();
+        }
+
+        deleteCompletedSegments();
+
+        Gauge.builder("chat.journal.lag", this, j -> j.getLastSeq() - j.checkpoint)
+                .description("Journaled chat messages not yet confirmed in Mongo")
+                .register(meterRegistry);
+
+        forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-journal-force");
+            t.setDaemon(true);
+            return t;
+        });
+        forcer.scheduleWithFixedDelay(this::force, forceIntervalMs, forceIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) return;
+
+        forcer.shutdownNow();
+        force();
+        synchronized (this) {
+            segmentChannel.close();
+        }
+        lockChannel.close();
+    }
+
+    // held until close(); also refuses a second open in this JVM
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (lockChannel.tryLock() != null) return;
+        } catch (OverlappingFileLockException e) {
+            // locked by this process
+        }
+        lockChannel.close();
+        throw new IllegalStateException("Chat journal " + dir + " is in use by another process");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    // ------------------- APPEND -----------------------
+    /**
+     * @return the record's seq, or -1 when the journal is off or the write
+     *         failed (the caller then falls back to writing Mongo directly)
+     */
+    public long append(Message message) {
+        if (!enabled) return -1;
+
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(message);
+        } catch (IOException e) {
+            System.err.println("Chat journal serialization failed: " + e.getMessage());
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (this) {
+            try {
+                int size = HEADER_BYTES + payload.length;
+                if (size > segmentBytes) return -1;
+                if (segment.remaining() < size) {
+                    roll(nextSeq);
+                }
+
+                long seq = nextSeq++;
+                int start = segment.position();
+                segment.position(start + 4);
+                segment.putLong(seq).putInt((int) crc.getValue()).put(payload);
+                // length last: a torn record reads as the end of the segment
+                segment.putInt(start, payload.length);
+
+                pending.put(message.getId(), seq);
+                return seq;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Chat journal append failed: " + e.getMessage());
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Called once messages are in Mongo. Moves the checkpoint over every
+     * contiguous persisted seq; ids that are not journaled are ignored.
+     */
+    public void markPersisted(Collection<Message> messages) {
+        if (!enabled) return;
+
+        for (Message m : messages) {
+            Long seq = pending.remove(m.getId());
+            // at or below the checkpoint it would never be removed again
+            if (seq != null && seq > checkpoint) persistedAhead.add(seq);
+        }
+
+        synchronized (persistedAhead) {
+            long cp = checkpoint;
+            while (persistedAhead.remove(cp + 1)) {
+                cp++;
+            }
+            if (cp != checkpoint) {
+                checkpoint = cp;
+                checkpointBuffer.putLong(0, cp);
+            }
+        }
+    }
+
+    // ------------------- REPLAY -----------------------
+    /** Sequential reader over the records from fromSeq up to the current end. */
+    public Cursor openCursor(long fromSeq) {
+        return new Cursor(fromSeq, getLastSeq());
+    }
+
+    public class Cursor {
+        private long nextSeq;
+        private final long lastSeq;
+        private Path file;
+        private ByteBuffer buffer;
+
+        private Cursor(long fromSeq, long lastSeq) {
+            this.nextSeq = fromSeq;
+            this.lastSeq = lastSeq;
+        }
+
+        // the end of the journal when this cursor was opened
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        public List<Message> next(int max) {
+            List<Message> out = new ArrayList<>(max);
+
+            while (out.size() < max && nextSeq <= lastSeq) {
+                if (buffer == null || !buffer.hasRemaining()) {
+                    if (!openSegmentFor(nextSeq)) break;
+                }
+
+                Record r = readRecord(buffer);
+                if (r == null) {
+                    // end of this segment, continue with the one starting at nextSeq
+                    buffer = null;
+                    if (!segmentStartsAt(nextSeq)) break;
+                    continue;
+                }
+                if (r.seq < nextSeq) continue;
+
+                nextSeq = r.seq + 1;
+                // persisted since the cursor was opened from an older spill point
+                if (r.seq <= checkpoint) continue;
+                pending.putIfAbsent(r.message.getId(), r.seq);
+                out.add(r.message);
+            }
+            return out;
+        }
+
+        private boolean openSegmentFor(long seq) {
+            Map.Entry<Long, Path> entry;
+            synchronized (ChatJournal.this) {
+                entry = segments.floorEntry(seq);
+            }
+            if (entry == null || entry.getValue().equals(file)) return false;
+
+            file = entry.getValue();
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                return true;
+            } catch (IOException e) {
+                System.err.println("Chat journal segment unreadable " + file + ": " + e.getMessage());
+                return false;
+            }
+        }
+
+        private boolean segmentStartsAt(long seq) {
+            synchronized (ChatJournal.this) {
+                return segments.containsKey(seq);
+            }
+        }
+    }
+
+    // ------------------- SEGMENTS -----------------------
+    private void roll(long startSeq) throws IOException {
+        if (segmentChannel != null) {
+            segment.force();
+            segmentChannel.close();
+        }
+
+        Path file = dir.resolve(String.format("%020d%s", startSeq, SEGMENT_SUFFIX));
+        segmentChannel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segments.put(startSeq, file);
+        nextSeq = startSeq;
+    }
+
+    // find the end of the last segment and keep appending to it
+    private void reopenLast() throws IOException {
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        segmentChannel = FileChannel.open(last.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, segmentChannel.size()));
+
+        long seq = last.getKey();
+        Record r;
+        int end = 0;
+        while ((r = readRecord(segment)) != null) {
+            seq = r.seq + 1;
+            end = segment.position();
+        }
+
+        // anything after the last valid record is a torn write
+        segment.position(end);
+        for (int i = end; i < Math.min(end + HEADER_BYTES, segment.limit()); i++) {
+            segment.put(i, (byte) 0);
+        }
+        nextSeq = Math.max(seq, checkpoint + 1);
+    }
+
+    // a segment is done once the next one starts at or below checkpoint + 1
+    private synchronized void deleteCompletedSegments() {
+        Iterator<Map.Entry<Long, Path>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Path> entry = it.next();
+            Long nextStart = segments.higherKey(entry.getKey());
+            if (nextStart == null || nextStart > checkpoint + 1) break;
+
+            try {
+                Files.deleteIfExists(entry.getValue());
+                it.remove();
+            } catch (IOException e) {
+                System.err.println("Chat journal segment not deleted " + entry.getValue() + ": " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void force() {
+        try {
+            synchronized (this) {
+                segment.force();
+            }
+            checkpointBuffer.force();
+            deleteCompletedSegments();
+        } catch (RuntimeException e) {
+            System.err.println("Chat journal force failed: " + e.getMessage());
+        }
+    }
+
+    // null at the end of the written part of a segment or at a torn / corrupt record
+    private Record readRecord(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) return null;
+
+        int start = buf.position();
+        int length = buf.getInt(start);
+        if (length <= 0 || length > buf.limit() - start - HEADER_BYTES) return null;
+
+        long seq = buf.getLong(start + 4);
+        int crc = buf.getInt(start + 12);
+
+        byte[] payload = new byte[length];
+        buf.get(start + HEADER_BYTES, payload);
+
+        CRC32 check = new CRC32();
+        check.update(payload);
+        if ((int) check.getValue() != crc) return null;
+
+        try {
+            Message message = objectMapper.readValue(payload, Message.class);
+            buf.position(start + HEADER_BYTES + length);
+            return new Record(seq, message);
+        } catch (IOException e) {
+            System.err.println("Chat journal record " + seq + " unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private long startSeqOf(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record Record(long seq, Message message) {
+    }
+}
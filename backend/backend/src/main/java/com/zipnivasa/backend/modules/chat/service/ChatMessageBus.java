@@ -0,0 +1,21 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.dto.ChatBusEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * Cross-node transport for chat deliveries and presence.
+ * Implementations stamp origin / at on publish and never hand a node
+ * its own events back.
+ *
+ * chat.bus.type=in-memory (default, nodes in one JVM) | mongo
+ */
+public interface ChatMessageBus {
+
+    String getNodeId();
+
+    void publish(ChatBusEvent event);
+
+    void subscribe(Consumer<ChatBusEvent> listener);
+}
@@ -0,0 +1,203 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.dto.MessageResponse;
+import com.zipnivasa.backend.modules.chat.dto.SearchResponse;
+import com.zipnivasa.backend.modules.chat.dto.SearchResult;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import com.zipnivasa.backend.modules.chat.model.SearchPosting;
+import com.zipnivasa.backend.modules.chat.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Full-text search over a user's chat messages.
+ *
+ * The chat_search collection is an inverted index (one posting per
+ * distinct term of a message), written next to the conversation index
+ * whenever messages are persisted. Queries only read postings and then
+ * load the hits by id (hot collection first, then the archive), the
+ * messages collection is never scanned.
+ *
+ * Ranking: number of query terms matched, then newest first, over the
+ * newest MAX_CANDIDATES postings; the response says when that cut dropped
+ * older matches.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatSearchService {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int MAX_TERMS_PER_MESSAGE = 100;
+    private static final int MAX_QUERY_TERMS = 8;
+
+    private static final int MAX_PAGE_SIZE = 50;
+
+    // newest postings considered per query, bounds the cost of very common terms
+    private static final int MAX_CANDIDATES = 5000;
+
+    private static final int SNIPPET_RADIUS = 60;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepository;
+    private final ChatArchiveService chatArchiveService;
+
+    // ------------------- INDEXING -----------------------
+    public void index(List<Message> messages) {
+        List<SearchPosting> postings = new ArrayList<>();
+
+        for (Message m : messages) {
+            for (String term : tokenize(m.getMessage(), MAX_TERMS_PER_MESSAGE)) {
+                postings.add(SearchPosting.builder()
+                        .id(m.getId() + ":" + term)
+                        .participants(List.of(m.getSender(), m.getReceiver()))
+                        .term(term)
+                        .messageId(m.getId())
+                        .createdAt(m.getCreatedAt())
+                        .build());
+            }
+        }
+
+        if (postings.isEmpty()) return;
+
+        // postings of a retried batch already exist
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SearchPosting.class)
+                    .insert(postings)
+                    .execute();
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(err -> err.getCode() == DUPLICATE_KEY);
+            if (!onlyDuplicates) throw e;
+        }
+    }
+
+    // ------------------- QUERY -----------------------
+    public SearchResponse search(String userId, String q, int page, int size) {
+        List<String> terms = tokenize(q, MAX_QUERY_TERMS);
+        if (terms.isEmpty()) return SearchResponse.builder().results(List.of()).build();
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Criteria postings = where("participants").is(userId).and("term").in(terms);
+
+        Aggregation ranking = newAggregation(
+                match(postings),
+                sort(Sort.Direction.DESC, "createdAt"),
+                limit(MAX_CANDIDATES),
+                group("messageId").count().as("hits").first("createdAt").as("createdAt"),
+                sort(Sort.by(Sort.Direction.DESC, "hits").and(Sort.by(Sort.Direction.DESC, "createdAt"))),
+                skip((long) Math.max(page, 0) * pageSize),
+                limit(pageSize)
+        );
+
+        List<Document> ranked = mongoTemplate
+                .aggregate(ranking, SearchPosting.class, Document.class)
+                .getMappedResults();
+
+        List<String> ids = ranked.stream().map(d -> d.getString("_id")).toList();
+        Map<String, Message> byId = new HashMap<>();
+        messageRepository.findAllById(ids).forEach(m -> byId.put(m.getId(), m));
+        if (byId.size() < ids.size()) {
+            List<String> archived = ids.stream().filter(id -> !byId.containsKey(id)).toList();
+            chatArchiveService.findByIds(archived).forEach(m -> byId.put(m.getId(), m));
+        }
+
+        Set<String> termSet = new HashSet<>(terms);
+        List<SearchResult> results = new ArrayList<>(ranked.size());
+
+        for (Document d : ranked) {
+            Message m = byId.get(d.getString("_id"));
+            if (m == null) continue;
+
+            results.add(SearchResult.builder()
+                    .message(MessageResponse.of(m))
+                    .partnerId(userId.equals(m.getSender()) ? m.getReceiver() : m.getSender())
+                    .snippet(snippet(m.getMessage(), termSet))
+                    .matchedTerms(d.getInteger("hits", 0))
+                    .build());
+        }
+
+        // a posting past the cut exists, the ranking did not see every match
+        Query beyondCut = new Query(postings)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .skip(MAX_CANDIDATES)
+                .limit(1);
+        beyondCut.fields().include("_id");
+        boolean truncated = !mongoTemplate.find(beyondCut, SearchPosting.class).isEmpty();
+
+        return SearchResponse.builder()
+                .results(results)
+                .truncated(truncated)
+                .build();
+    }
+
+    // ------------------- TEXT -----------------------
+    private List<String> tokenize(String text, int max) {
+        if (text == null) return List.of();
+
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find() && terms.size() < max) {
+            String term = normalize(matcher.group());
+            if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private String normalize(String token) {
+        return token.toLowerCase(Locale.ROOT);
+    }
+
+    private String snippet(String text, Set<String> terms) {
+        if (text == null) return "";
+
+        List<int[]> hits = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            if (terms.contains(normalize(matcher.group()))) {
+                hits.add(new int[]{matcher.start(), matcher.end()});
+            }
+        }
+
+        int from = hits.isEmpty() ? 0 : Math.max(0, hits.get(0)[0] - SNIPPET_RADIUS);
+        int to = Math.min(text.length(), (hits.isEmpty() ? 0 : hits.get(0)[1]) + SNIPPET_RADIUS);
+
+        StringBuilder sb = new StringBuilder();
+        if (from > 0) sb.append("…");
+
+        int pos = from;
+        for (int[] hit : hits) {
+            if (hit[0] < from) continue;
+            if (hit[1] > to) break;
+            sb.append(HtmlUtils.htmlEscape(text.substring(pos, hit[0])))
+                    .append("<mark>")
+                    .append(HtmlUtils.htmlEscape(text.substring(hit[0], hit[1])))
+                    .append("</mark>");
+            pos = hit[1];
+        }
+        sb.append(HtmlUtils.htmlEscape(text.substring(pos, to)));
+
+        if (to < text.length()) sb.append("…");
+        return sb.toString();
+    }
+}
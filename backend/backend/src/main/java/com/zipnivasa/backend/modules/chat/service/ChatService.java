@@ -1,102 +1,305 @@
 package com.zipnivasa.backend.modules.chat.service;
 
 import com.zipnivasa.backend.modules.chat.dto.MessageResponse;
+import com.zipnivasa.backend.modules.chat.dto.ReadReceiptEvent;
 import com.zipnivasa.backend.modules.chat.dto.SendMessageRequest;
+import com.zipnivasa.backend.modules.chat.model.Conversation;
 import com.zipnivasa.backend.modules.chat.model.Message;
 import com.zipnivasa.backend.modules.chat.repository.MessageRepository;
-import com.zipnivasa.backend.modules.user.model.User;
-import com.zipnivasa.backend.modules.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.*;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Service
 @RequiredArgsConstructor
 public class ChatService {
 
+    private static final int MAX_HISTORY_PAGE = 200;
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 128;
+
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final ConversationIndexService conversationIndexService;
+    private final ChatSyncService chatSyncService;
+    private final ChatSearchService chatSearchService;
+    private final ChatArchiveService chatArchiveService;
+    private final ChatWebSocketService webSocketService;
+    private final MessagePersistencePipeline persistencePipeline;
+    private final MongoTemplate mongoTemplate;
+    private final RecentSendCache recentSendCache;
 
     // ------------------- SEND MESSAGE -----------------------
     public MessageResponse send(String senderId, SendMessageRequest req) {
-        Message saved = messageRepository.save(
-                Message.builder()
-                        .sender(senderId)
-                        .receiver(req.getReceiver())
-                        .message(req.getMessage().trim())
-                        .createdAt(Instant.now())
-                        .readAt(null)
-                        .build()
-        );
-
-        return toResponse(saved);
+        MessageResponse previous = findPreviousSend(senderId, req);
+        if (previous != null) return previous;
+
+        // journaled: same write-behind path as STOMP, Mongo stalls don't reach the caller
+        if (persistencePipeline.isJournaled()) {
+            return sendAsync(senderId, req).response();
+        }
+
+        Message saved;
+        try {
+            saved = messageRepository.save(newMessage(senderId, req));
+        } catch (DuplicateKeyException e) {
+            // a concurrent retry with the same clientMessageId won; journaled
+            // sends resolve the same race in the pipeline instead
+            previous = findPreviousSend(senderId, req);
+            if (previous != null) return previous;
+            throw e;
+        }
+        webSocketService.linkContacts(senderId, req.getReceiver());
+
+        conversationIndexService.onMessageSent(saved);
+        chatSyncService.onMessagesSent(List.of(saved));
+        chatSearchService.index(List.of(saved));
+
+        MessageResponse response = MessageResponse.of(saved);
+        if (saved.getClientMessageId() != null) {
+            recentSendCache.putIfAbsent(senderId, saved.getClientMessageId(), response);
+        }
+        return response;
+    }
+
+    /** response is the earlier send's when duplicate, already delivered to the receiver */
+    public record SendResult(MessageResponse response, boolean duplicate) {
     }
 
-    public List<MessageResponse> getHistory(String me, String other) {
-        List<Message> messages1 = messageRepository.findBySenderAndReceiverOrderByCreatedAtAsc(me, other);
-        List<Message> messages2 = messageRepository.findByReceiverAndSenderOrderByCreatedAtAsc(me, other);
+    /**
+     * STOMP path: id and createdAt are assigned here so the message can be
+     * delivered right away, persistence happens in the write-behind pipeline.
+     */
+    public SendResult sendAsync(String senderId, SendMessageRequest req) {
+        MessageResponse previous = findPreviousSend(senderId, req);
+        if (previous != null) return new SendResult(previous, true);
 
-        List<Message> merged = new ArrayList<>();
-        merged.addAll(messages1);
-        merged.addAll(messages2);
+        Message message = newMessage(senderId, req);
+        message.setId(new ObjectId().toHexString());
+        MessageResponse response = MessageResponse.of(message);
 
-        merged.sort(Comparator.comparing(Message::getCreatedAt));
+        // claim the id before writing, a concurrent retry gets this response
+        if (message.getClientMessageId() != null) {
+            previous = recentSendCache.putIfAbsent(senderId, message.getClientMessageId(), response);
+            if (previous != null) return new SendResult(previous, true);
+        }
+
+        try {
+            persistencePipeline.submit(message);
+        } catch (RuntimeException e) {
+            if (message.getClientMessageId() != null) {
+                recentSendCache.remove(senderId, message.getClientMessageId());
+            }
+            throw e;
+        }
+        webSocketService.linkContacts(senderId, req.getReceiver());
 
-        return merged.stream().map(this::toResponse).toList();
+        return new SendResult(response, false);
     }
 
-    public List<Map<String, Object>> getConversations(String myId) {
+    /**
+     * The response of an earlier send with the same clientMessageId, from
+     * the recent-send cache or the sender_clientMessageId index; null for a
+     * new message or a request without an id.
+     */
+    public MessageResponse findPreviousSend(String senderId, SendMessageRequest req) {
+        String clientMessageId = clientMessageIdOf(req);
+        if (clientMessageId == null) return null;
 
-        List<Message> msgs = messageRepository.findBySenderOrReceiverOrderByCreatedAtDesc(myId, myId);
+        MessageResponse cached = recentSendCache.get(senderId, clientMessageId);
+        if (cached != null) return cached;
 
-        Map<String, Map<String, Object>> map = new LinkedHashMap<>();
+        return messageRepository.findBySenderAndClientMessageId(senderId, clientMessageId)
+                .map(m -> {
+                    MessageResponse response = MessageResponse.of(m);
+                    recentSendCache.putIfAbsent(senderId, clientMessageId, response);
+                    return response;
+                })
+                .orElse(null);
+    }
 
-        for (Message m : msgs) {
-            String other = m.getSender().equals(myId) ? m.getReceiver() : m.getSender();
+    private String clientMessageIdOf(SendMessageRequest req) {
+        String id = req.getClientMessageId();
+        if (id == null || id.isBlank()) return null;
+        if (id.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+            throw new IllegalArgumentException("clientMessageId is too long");
+        }
+        return id;
+    }
 
-            map.putIfAbsent(other, new HashMap<>());
+    private Message newMessage(String senderId, SendMessageRequest req) {
+        return Message.builder()
+                .sender(senderId)
+                .receiver(req.getReceiver())
+                .conversationKey(Message.conversationKeyOf(senderId, req.getReceiver()))
+                .message(req.getMessage().trim())
+                .clientMessageId(clientMessageIdOf(req))
+                .createdAt(Instant.now())
+                .readAt(null)
+                .build();
+    }
 
-            Map<String, Object> entry = map.get(other);
+    /**
+     * One page of a thread, oldest first.
+     *  - no cursor     → latest {@code limit} messages
+     *  - before=T      → older page, ending just before T
+     *  - after=T       → newer page, starting just after T
+     *
+     * Pages are keyed on (createdAt, id): with beforeId / afterId (the id of
+     * the boundary message) messages sharing T's millisecond are split by
+     * id instead of being skipped. Without an id only createdAt counts.
+     *
+     * The archive is only read when the page may reach past the archive
+     * horizon and the conversation has archived messages (archivedUpTo),
+     * recent pages and never-archived chats stay on the hot collection.
+     */
+    public List<MessageResponse> getHistory(String me, String other,
+                                            Instant before, String beforeId,
+                                            Instant after, String afterId, int limit) {
+        String key = Message.conversationKeyOf(me, other);
+        int pageSize = Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE);
+        Instant horizon = chatArchiveService.horizon();
 
-            entry.put("lastMessage", toResponse(m));
+        List<Message> messages;
+        if (after != null) {
+            messages = findHot(key, after, afterId, false, pageSize);
+            if (after.isBefore(horizon) && reachesArchive(me, other, after)) {
+                messages = merge(messages, chatArchiveService.findAfter(key, after, afterId, pageSize),
+                        ChatArchiveService.OLDEST_FIRST, pageSize);
+            }
+        } else {
+            messages = findHot(key, before, beforeId, true, pageSize);
 
-            long unread = messageRepository
-                    .findBySenderAndReceiverAndReadAtIsNull(other, myId)
-                    .size();
+            // a full page only continues into the archive from its oldest message on
+            boolean shortPage = messages.size() < pageSize;
+            Instant oldest = shortPage ? null : messages.get(messages.size() - 1).getCreatedAt();
+            if ((shortPage || oldest.isBefore(horizon)) && reachesArchive(me, other, oldest)) {
+                messages = merge(messages, chatArchiveService.findBefore(key, before, beforeId, pageSize),
+                        ChatArchiveService.OLDEST_FIRST.reversed(), pageSize);
+            }
 
-            entry.put("unreadCount", unread);
+            messages = new ArrayList<>(messages);
+            Collections.reverse(messages);
         }
 
-        for (String partnerId : map.keySet()) {
-            Optional<User> u = userRepository.findById(partnerId);
-            u.ifPresent(user ->
-                    map.get(partnerId).put("user",
-                            Map.of(
-                                    "id", user.getId(),
-                                    "name", user.getName(),
-                                    "phone", user.getPhone(),
-                                    "role", user.getRole()
-                            )
-                    )
-            );
+        return messages.stream().map(MessageResponse::of).toList();
+    }
+
+    // archived messages exist, at or after from when one is given
+    private boolean reachesArchive(String me, String other, Instant from) {
+        Instant archivedUpTo = chatArchiveService.archivedUpTo(me, other);
+        return archivedUpTo != null && (from == null || !from.isAfter(archivedUpTo));
+    }
+
+    // newest first before (at, atId), oldest first after it; at = null is the newest page
+    private List<Message> findHot(String key, Instant at, String atId, boolean older, int limit) {
+        Criteria criteria = where("conversationKey").is(key);
+        if (at != null) {
+            Criteria beyond = older ? where("createdAt").lt(at) : where("createdAt").gt(at);
+            if (atId == null) {
+                criteria.andOperator(beyond);
+            } else {
+                Criteria tie = older
+                        ? where("createdAt").is(at).and("_id").lt(atId)
+                        : where("createdAt").is(at).and("_id").gt(atId);
+                criteria.orOperator(beyond, tie);
+            }
         }
 
-        return new ArrayList<>(map.values());
+        Sort.Direction direction = older ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Query query = new Query(criteria)
+                .with(Sort.by(direction, "createdAt").and(Sort.by(direction, "_id")))
+                .limit(limit);
+
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    // a message caught mid-archival can be in both tiers
+    private List<Message> merge(List<Message> hot, List<Message> archived, Comparator<Message> order, int limit) {
+        if (archived.isEmpty()) return hot;
+
+        Map<String, Message> byId = new LinkedHashMap<>();
+        hot.forEach(m -> byId.put(m.getId(), m));
+        archived.forEach(m -> byId.putIfAbsent(m.getId(), m));
+
+        return byId.values().stream().sorted(order).limit(limit).toList();
     }
 
-    public void markAsRead(String myId, String partnerId) {
-        List<Message> unread = messageRepository
-                .findBySenderAndReceiverAndReadAtIsNull(partnerId, myId);
+    public List<Map<String, Object>> getConversations(String myId, int page, int size) {
+
+        List<Conversation> rows = conversationIndexService.getInbox(myId, page, size);
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+
+        for (Conversation c : rows) {
+            Map<String, Object> entry = new HashMap<>();
+
+            entry.put("lastMessage", toResponse(c.getLastMessage()));
+            entry.put("unreadCount", c.getUnreadCount());
+
+            Conversation.PartnerSnapshot p = c.getPartnerSnapshot();
+            if (p != null) {
+                Map<String, Object> user = new HashMap<>();
+                user.put("id", p.getId());
+                user.put("name", p.getName());
+                user.put("phone", p.getPhone());
+                user.put("role", p.getRole());
+                entry.put("user", user);
+            }
+
+            result.add(entry);
+        }
+
+        return result;
+    }
+
+    /**
+     * Marks every unread message partner → me up to the watermark as read
+     * with one updateMulti, then sends a single read receipt to the partner.
+     * Messages not persisted yet are marked by the MessagePersistencePipeline
+     * from the watermark stored on the conversation row.
+     */
+    public long markAsRead(String myId, String partnerId, Instant upTo) {
+        Instant now = Instant.now();
+        Instant watermark = upTo != null ? upTo : now;
+
+        // first: covers messages delivered but still in the persistence pipeline
+        conversationIndexService.markReadUpTo(myId, partnerId, watermark);
+
+        Query unread = new Query(where("conversationKey").is(Message.conversationKeyOf(myId, partnerId))
+                .and("createdAt").lte(watermark)
+                .and("sender").is(partnerId)
+                .and("readAt").is(null));
+
+        long updated = mongoTemplate.updateMulti(unread, new Update().set("readAt", now), Message.class)
+                .getModifiedCount();
+
+        if (updated > 0) {
+            // decrement instead of reset, messages arriving meanwhile stay unread
+            conversationIndexService.onRead(myId, partnerId, updated);
+            chatSyncService.onRead(myId, partnerId, watermark, now);
+            webSocketService.sendReadReceipt(partnerId, ReadReceiptEvent.builder()
+                    .reader(myId)
+                    .upTo(watermark)
+                    .readAt(now)
+                    .count(updated)
+                    .build());
+        }
 
-        unread.forEach(m -> {
-            m.setReadAt(Instant.now());
-            messageRepository.save(m);
-        });
+        return updated;
     }
 
-    private MessageResponse toResponse(Message m) {
+    private MessageResponse toResponse(Conversation.LastMessage m) {
+        if (m == null) return null;
         return MessageResponse.builder()
                 .id(m.getId())
                 .sender(m.getSender())
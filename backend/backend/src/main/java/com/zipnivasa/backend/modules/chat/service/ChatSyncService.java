@@ -0,0 +1,179 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.dto.SyncResponse;
+import com.zipnivasa.backend.modules.chat.model.ChatChange;
+import com.zipnivasa.backend.modules.chat.model.ChatSequence;
+import com.zipnivasa.backend.modules.chat.model.Conversation;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import com.zipnivasa.backend.modules.chat.repository.ChatChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Per-user change log behind /api/chat/sync.
+ *
+ * Every write that a reconnecting client would otherwise re-download
+ * (messages, read state, partner profile) appends one ChatChange per
+ * affected user. Sequence numbers are reserved in blocks, one
+ * findAndModify per user per batch.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatSyncService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // a gap younger than this may still be filled by an in-flight writer
+    private static final long SETTLE_MS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ChatChangeRepository chatChangeRepository;
+
+    // ------------------- WRITE -----------------------
+    public void onMessagesSent(List<Message> messages) {
+        List<ChatChange> changes = new ArrayList<>(messages.size() * 2);
+        Instant now = Instant.now();
+
+        for (Message m : messages) {
+            ChatChange.MessageData data = new ChatChange.MessageData(
+                    m.getId(), m.getSender(), m.getReceiver(), m.getMessage(), m.getCreatedAt(), m.getReadAt());
+
+            changes.add(messageChange(m.getSender(), m.getReceiver(), data, now));
+            changes.add(messageChange(m.getReceiver(), m.getSender(), data, now));
+        }
+
+        append(changes);
+    }
+
+    // reader's other devices clear their unread badge, partner gets the receipt
+    public void onRead(String readerId, String partnerId, Instant upTo, Instant readAt) {
+        Instant now = Instant.now();
+        append(List.of(
+                readChange(readerId, partnerId, readerId, upTo, readAt, now),
+                readChange(partnerId, readerId, readerId, upTo, readAt, now)
+        ));
+    }
+
+    public void onPartnerUpdated(Collection<String> owners, Conversation.PartnerSnapshot snapshot) {
+        Instant now = Instant.now();
+        List<ChatChange> changes = new ArrayList<>(owners.size());
+        for (String owner : owners) {
+            changes.add(ChatChange.builder()
+                    .userId(owner)
+                    .type(ChatChange.Type.CONVERSATION)
+                    .partner(snapshot.getId())
+                    .partnerSnapshot(snapshot)
+                    .createdAt(now)
+                    .build());
+        }
+        append(changes);
+    }
+
+    private void append(List<ChatChange> changes) {
+        if (changes.isEmpty()) return;
+
+        Map<String, List<ChatChange>> byUser = new LinkedHashMap<>();
+        for (ChatChange c : changes) {
+            byUser.computeIfAbsent(c.getUserId(), k -> new ArrayList<>()).add(c);
+        }
+
+        byUser.forEach((userId, userChanges) -> {
+            long last = reserve(userId, userChanges.size());
+            long seq = last - userChanges.size();
+            for (ChatChange c : userChanges) {
+                c.setSeq(++seq);
+            }
+        });
+
+        mongoTemplate.insertAll(changes);
+    }
+
+    // @return the last seq of the reserved block
+    private long reserve(String userId, int count) {
+        ChatSequence sequence = mongoTemplate.findAndModify(
+                new Query(where("_id").is(userId)),
+                new Update().inc("seq", count),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                ChatSequence.class
+        );
+        return sequence.getSeq();
+    }
+
+    // ------------------- READ -----------------------
+    public SyncResponse getChanges(String userId, long cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        List<ChatChange> page = chatChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeqAsc(
+                userId, cursor, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = page.size() > pageSize;
+        if (hasMore) {
+            page = page.subList(0, pageSize);
+        }
+
+        // stop in front of a recent gap, a concurrent writer has not inserted it yet
+        long staleBefore = System.currentTimeMillis() - SETTLE_MS;
+        boolean resync = false;
+        long expected = cursor + 1;
+        int end = 0;
+
+        for (ChatChange c : page) {
+            if (c.getSeq() != expected) {
+                if (c.getCreatedAt() != null && c.getCreatedAt().toEpochMilli() > staleBefore) {
+                    hasMore = true;
+                    break;
+                }
+                // an old gap at the start is an expiry only if nothing at or before
+                // the cursor is retained; any other old gap is a lost write, skipped
+                if (end == 0 && cursor > 0 && !chatChangeRepository.existsByUserIdAndSeqLessThanEqual(userId, cursor)) {
+                    resync = true;
+                }
+            }
+            expected = c.getSeq() + 1;
+            end++;
+        }
+
+        List<ChatChange> changes = page.subList(0, end);
+        long nextCursor = changes.isEmpty() ? cursor : changes.get(changes.size() - 1).getSeq();
+
+        return SyncResponse.builder()
+                .changes(new ArrayList<>(changes))
+                .cursor(nextCursor)
+                .hasMore(hasMore)
+                .resync(resync)
+                .build();
+    }
+
+    private ChatChange messageChange(String userId, String partner, ChatChange.MessageData data, Instant now) {
+        return ChatChange.builder()
+                .userId(userId)
+                .type(ChatChange.Type.MESSAGE)
+                .partner(partner)
+                .message(data)
+                .createdAt(now)
+                .build();
+    }
+
+    private ChatChange readChange(String userId, String partner, String reader,
+                                  Instant upTo, Instant readAt, Instant now) {
+        return ChatChange.builder()
+                .userId(userId)
+                .type(ChatChange.Type.READ)
+                .partner(partner)
+                .reader(reader)
+                .readUpTo(upTo)
+                .readAt(readAt)
+                .createdAt(now)
+                .build();
+    }
+}
@@ -1,9 +1,31 @@
 package com.zipnivasa.backend.modules.chat.service;
 
-import lombok.RequiredArgsConstructor;
+import com.zipnivasa.backend.config.StompCodec;
+import com.zipnivasa.backend.config.WebSocketSessionRegistry;
+import com.zipnivasa.backend.modules.chat.dto.ChatBusEvent;
+import com.zipnivasa.backend.modules.chat.dto.PresenceDeltaEvent;
+import com.zipnivasa.backend.modules.chat.repository.ConversationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.CloseStatus;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,70 +33,392 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * This service replicates the behavior of your Node socket.io system:
  *
- * - onlineUsers Map
- * - store user ↔ session mapping
- * - broadcast online users
+ * - user ↔ sessions mapping (PresenceRegistry, several tabs / devices per user)
+ * - presence deltas (joined / left), coalesced per window and sent
+ *   only to online users who have a conversation with the user
  * - send message events
  * - typing / stop typing events
+ * - cluster: users on other nodes are reached through the ChatMessageBus,
+ *   presence of remote users is mirrored in RemotePresence
  */
 @Service
-@RequiredArgsConstructor
 public class ChatWebSocketService {
 
+    private static final int MAX_RELAYED_CONTACTS = 100_000;
+
+    // told apart from slow-consumer closes (plain SESSION_NOT_RELIABLE) by its reason
+    static final CloseStatus STALE_SESSION = CloseStatus.SESSION_NOT_RELIABLE.withReason("Presence heartbeat timed out");
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceRegistry presenceRegistry;
+    private final RemotePresence remotePresence;
+    private final ChatMessageBus bus;
+    private final ConversationRepository conversationRepository;
+    private final StompCodec stompCodec;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final int maxContacts;
+    private final long announceMs;
+    private final long staleAfterMs;
+
+    // userId → latest state inside the current window (true = online)
+    private final Map<String, Boolean> pendingPresence = new ConcurrentHashMap<>();
 
-    // userId → sessionId
-    private final Map<String, String> onlineUsers = new ConcurrentHashMap<>();
+    // what watchers were last told
+    private final Set<String> publishedOnline = ConcurrentHashMap.newKeySet();
 
-    // sessionId → userId
-    private final Map<String, String> sessionToUser = new ConcurrentHashMap<>();
+    // reverse-interest index: userId → online users with a conversation with them
+    private final Map<String, Set<String>> watchers = new ConcurrentHashMap<>();
 
+    // online userId → the partners they watch
+    private final Map<String, Set<String>> watching = new ConcurrentHashMap<>();
 
-    public void registerUser(String userId, String sessionId) {
-        onlineUsers.put(userId, sessionId);
-        sessionToUser.put(sessionId, userId);
+    // "a:b" pairs already relayed, reconnecting watchers reload from the conversation index
+    private final Set<String> relayedContacts = ConcurrentHashMap.newKeySet();
+
+    private final Counter presenceEvents;
+    private final Counter presenceSuppressed;
+    private final Counter presenceDeltasSent;
+    private final Counter busRelayed;
+    private final Counter sessionsReaped;
+
+    public ChatWebSocketService(SimpMessagingTemplate messagingTemplate,
+                                PresenceRegistry presenceRegistry,
+                                RemotePresence remotePresence,
+                                ChatMessageBus bus,
+                                ConversationRepository conversationRepository,
+                                StompCodec stompCodec,
+                                WebSocketSessionRegistry sessionRegistry,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.presence.max-contacts:500}") int maxContacts,
+                                @Value("${chat.bus.announce-ms:30000}") long announceMs,
+                                @Value("${chat.presence.stale-after-ms:30000}") long staleAfterMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.presenceRegistry = presenceRegistry;
+        this.remotePresence = remotePresence;
+        this.bus = bus;
+        this.conversationRepository = conversationRepository;
+        this.stompCodec = stompCodec;
+        this.sessionRegistry = sessionRegistry;
+        this.maxContacts = maxContacts;
+        this.announceMs = announceMs;
+        this.staleAfterMs = staleAfterMs;
+        this.presenceEvents = meterRegistry.counter("chat.presence.events");
+        this.presenceSuppressed = meterRegistry.counter("chat.presence.suppressed");
+        this.presenceDeltasSent = meterRegistry.counter("chat.presence.deltas.sent");
+        this.busRelayed = meterRegistry.counter("chat.bus.relayed");
+        this.sessionsReaped = meterRegistry.counter("chat.presence.reaped");
+        meterRegistry.gauge("chat.presence.sessions", presenceRegistry, PresenceRegistry::getSessionCount);
+        meterRegistry.gauge("chat.presence.users", presenceRegistry, PresenceRegistry::getOnlineUserCount);
+    }
 
-        broadcastOnlineUsers();
+    @PostConstruct
+    public void joinCluster() {
+        bus.subscribe(this::onBusEvent);
+        bus.publish(ChatBusEvent.builder().type(ChatBusEvent.Type.SYNC).build());
+    }
+
+
+    // presence only changes on the first / last session of a user
+    public void registerUser(String userId, String sessionId, long heartbeatMs) {
+        if (presenceRegistry.register(userId, sessionId, heartbeatMs)) {
+            startWatching(userId);
+            publishPresence(userId, true);
+            recordPresence(userId, true);
+        }
     }
 
     public void removeUser(String sessionId) {
-        String userId = sessionToUser.remove(sessionId);
+        String userId = presenceRegistry.unregister(sessionId);
         if (userId != null) {
-            onlineUsers.remove(userId);
-            broadcastOnlineUsers();
+            stopWatching(userId);
+            publishPresence(userId, false);
+            recordPresence(userId, isUserOnline(userId));
+        }
+    }
+
+    /**
+     * Evicts sessions whose SessionDisconnectEvent never came (TCP half-close,
+     * proxy idle timeout): no frame, not even a heartbeat, for staleAfterMs.
+     * The WebSocket is closed too, which releases the broker's subscriptions
+     * and the session's send buffer through the regular disconnect path.
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.reap-interval-ms:15000}")
+    public void reapStaleSessions() {
+        long now = System.currentTimeMillis();
+
+        for (PresenceRegistry.SessionInfo session : presenceRegistry.findStale(now, staleAfterMs)) {
+            // touched since the scan
+            if (!session.isStale(System.currentTimeMillis(), staleAfterMs)) continue;
+
+            System.out.println("Reaping stale chat session " + session.getSessionId() + " of " + session.getUserId());
+            try {
+                sessionRegistry.close(session.getSessionId(), STALE_SESSION);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Closing stale chat session " + session.getSessionId() + " failed: " + e.getMessage());
+            }
+
+            // no-op if the close already produced the disconnect event
+            removeUser(session.getSessionId());
+            sessionsReaped.increment();
+        }
+    }
+
+    // snapshot for a new subscriber: which of my partners are online
+    public Set<String> getOnlineContacts(String userId) {
+        Set<String> contacts = watching.get(userId);
+        if (contacts == null) {
+            contacts = loadContacts(userId);
+        }
+
+        Set<String> online = new HashSet<>();
+        for (String c : contacts) {
+            if (isUserOnline(c)) online.add(c);
+        }
+        return online;
+    }
+
+
+    // ------------------- INTEREST INDEX -----------------------
+    // called on every send, a no-op unless this is a brand new pair
+    public void linkContacts(String a, String b) {
+        watch(a, b);
+        watch(b, a);
+
+        // either side may be watching from another node; relayed once per pair
+        if ((remotePresence.isOnline(a) || remotePresence.isOnline(b)) && relayedContacts.add(a + ":" + b)) {
+            if (relayedContacts.size() > MAX_RELAYED_CONTACTS) relayedContacts.clear();
+            bus.publish(ChatBusEvent.builder()
+                    .type(ChatBusEvent.Type.CONTACT)
+                    .userId(a)
+                    .partner(b)
+                    .build());
+        }
+    }
+
+    private void startWatching(String userId) {
+        Set<String> contacts = loadContacts(userId);
+        watching.put(userId, contacts);
+
+        for (String c : contacts) {
+            addWatcher(c, userId);
+        }
+    }
+
+    private void stopWatching(String userId) {
+        Set<String> contacts = watching.remove(userId);
+        if (contacts == null) return;
+
+        for (String c : contacts) {
+            watchers.computeIfPresent(c, (k, set) -> {
+                set.remove(userId);
+                return set.isEmpty() ? null : set;
+            });
         }
     }
 
+    private void watch(String watcher, String subject) {
+        Set<String> contacts = watching.get(watcher);
+        if (contacts != null && contacts.add(subject)) {
+            addWatcher(subject, watcher);
+        }
+    }
 
-    public void broadcastOnlineUsers() {
-        Set<String> users = onlineUsers.keySet();
+    private void addWatcher(String subject, String watcher) {
+        watchers.compute(subject, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(watcher);
+            return set;
+        });
+    }
 
-        messagingTemplate.convertAndSend(
-                "/topic/online-users",
-                users
-        );
+    private Set<String> loadContacts(String userId) {
+        Set<String> contacts = ConcurrentHashMap.newKeySet();
+        conversationRepository
+                .findByOwnerOrderByUpdatedAtDesc(userId, PageRequest.of(0, maxContacts))
+                .forEach(c -> contacts.add(c.getPartner()));
+        return contacts;
+    }
+
+
+    // ------------------- PRESENCE -----------------------
+    private void recordPresence(String userId, boolean online) {
+        presenceEvents.increment();
+
+        // an earlier change for this user in the same window is superseded
+        if (pendingPresence.put(userId, online) != null) {
+            presenceSuppressed.increment();
+        }
+    }
+
+    /**
+     * Publishes the net changes of the last window, one delta per
+     * interested watcher on /user/queue/presence.
+     * A connect + disconnect inside the window cancels out.
+     */
+    @Scheduled(fixedDelayString = "${chat.presence.coalesce-ms:250}")
+    public void flushPresence() {
+        if (pendingPresence.isEmpty()) return;
+
+        Map<String, List<String>> joinedBy = new HashMap<>();
+        Map<String, List<String>> leftBy = new HashMap<>();
+
+        for (String userId : pendingPresence.keySet()) {
+            Boolean online = pendingPresence.remove(userId);
+            if (online == null) continue;
+
+            boolean changed = online ? publishedOnline.add(userId) : publishedOnline.remove(userId);
+            if (!changed) {
+                presenceSuppressed.increment();
+                continue;
+            }
+
+            Set<String> interested = watchers.get(userId);
+            if (interested == null) continue;
+
+            Map<String, List<String>> target = online ? joinedBy : leftBy;
+            for (String w : interested) {
+                target.computeIfAbsent(w, k -> new ArrayList<>()).add(userId);
+            }
+        }
+
+        Set<String> recipients = new HashSet<>(joinedBy.keySet());
+        recipients.addAll(leftBy.keySet());
+
+        Instant now = Instant.now();
+        for (String w : recipients) {
+            sendLocal(w, "/queue/presence", PresenceDeltaEvent.builder()
+                    .joined(joinedBy.getOrDefault(w, List.of()))
+                    .left(leftBy.getOrDefault(w, List.of()))
+                    .at(now)
+                    .build());
+            presenceDeltasSent.increment();
+        }
+    }
+
+
+    // ------------------- CLUSTER -----------------------
+    private void publishPresence(String userId, boolean online) {
+        bus.publish(ChatBusEvent.builder()
+                .type(ChatBusEvent.Type.PRESENCE)
+                .userId(userId)
+                .online(online)
+                .build());
+    }
+
+    private void onBusEvent(ChatBusEvent event) {
+        switch (event.getType()) {
+            case DELIVER -> {
+                if (presenceRegistry.isOnline(event.getUserId())) {
+                    String userDestination = messagingTemplate.getUserDestinationPrefix() + event.getUserId() + event.getDestination();
+                    messagingTemplate.send(userDestination, MessageBuilder.withPayload(event.getBody())
+                            .setHeader(MessageHeaders.CONTENT_TYPE, MimeType.valueOf(event.getContentType()))
+                            .build());
+                }
+            }
+            case PRESENCE -> {
+                remotePresence.set(event.getOrigin(), event.getUserId(), Boolean.TRUE.equals(event.getOnline()));
+                recordPresence(event.getUserId(), isUserOnline(event.getUserId()));
+            }
+            case SNAPSHOT -> remotePresence.replace(event.getOrigin(), event.getUsers())
+                    .forEach(u -> recordPresence(u, isUserOnline(u)));
+            case SYNC -> announce();
+            case CONTACT -> {
+                watch(event.getUserId(), event.getPartner());
+                watch(event.getPartner(), event.getUserId());
+            }
+        }
+    }
+
+    /**
+     * Tells the other nodes who is connected here, and forgets nodes
+     * that missed three announcements in a row.
+     */
+    @Scheduled(fixedDelayString = "${chat.bus.announce-ms:30000}")
+    public void announce() {
+        bus.publish(ChatBusEvent.builder()
+                .type(ChatBusEvent.Type.SNAPSHOT)
+                .users(new ArrayList<>(presenceRegistry.getOnlineUserIds()))
+                .build());
+
+        remotePresence.expire(System.currentTimeMillis() - 3 * announceMs)
+                .forEach(u -> recordPresence(u, isUserOnline(u)));
+    }
+
+    /**
+     * Local sessions get the frame through the user destination
+     * /user/{destination}; if the user also has sessions on other nodes
+     * the serialized frame is relayed over the bus.
+     */
+    private void deliver(String userId, String destination, Object payload) {
+        if (presenceRegistry.isOnline(userId)) {
+            sendLocal(userId, destination, payload);
+        }
+
+        if (remotePresence.isOnline(userId)) {
+            Message<?> serialized = messagingTemplate.getMessageConverter().toMessage(payload, null);
+            if (serialized == null) return;
+
+            bus.publish(ChatBusEvent.builder()
+                    .type(ChatBusEvent.Type.DELIVER)
+                    .userId(userId)
+                    .destination(destination)
+                    .body((byte[]) serialized.getPayload())
+                    .contentType(String.valueOf(serialized.getHeaders().get(MessageHeaders.CONTENT_TYPE)))
+                    .build());
+            busRelayed.increment();
+        }
+    }
+
+
+    // encoded once in the receiver's codec; mixed sessions get JSON, transcoded per CBOR session
+    private void sendLocal(String userId, String destination, Object payload) {
+        Collection<PresenceRegistry.SessionInfo> sessions = presenceRegistry.getSessions(userId);
+        boolean binary = !sessions.isEmpty()
+                && sessions.stream().allMatch(s -> stompCodec.isBinary(s.getSessionId()));
+
+        if (binary) {
+            messagingTemplate.convertAndSendToUser(userId, destination, payload, stompCodec.cborHeaders());
+        } else {
+            messagingTemplate.convertAndSendToUser(userId, destination, payload);
+        }
     }
 
 
     public void sendPrivateMessage(String receiverId, Object payload) {
-        messagingTemplate.convertAndSend("/queue/messages/" + receiverId, payload);
+        deliver(receiverId, "/queue/messages", payload);
+    }
+
+
+    public void sendDeliveryAck(String senderId, Object ack) {
+        deliver(senderId, "/queue/acks", ack);
+    }
+
+
+    public void sendError(String userId, Object error) {
+        deliver(userId, "/queue/errors", error);
+    }
+
+
+    public void sendReadReceipt(String senderId, Object receipt) {
+        deliver(senderId, "/queue/read-receipts", receipt);
+    }
+
+
+    public void sendSyncPage(String userId, Object page) {
+        deliver(userId, "/queue/sync", page);
     }
 
 
     public void sendTyping(String receiverId, String senderId) {
-        messagingTemplate.convertAndSend("/queue/typing/" + receiverId, senderId);
+        deliver(receiverId, "/queue/typing", senderId);
     }
 
     public void sendStopTyping(String receiverId, String senderId) {
-        messagingTemplate.convertAndSend("/queue/stop-typing/" + receiverId, senderId);
+        deliver(receiverId, "/queue/stop-typing", senderId);
     }
 
 
     public boolean isUserOnline(String userId) {
-        return onlineUsers.containsKey(userId);
-    }
-
-    public String getSessionId(String userId) {
-        return onlineUsers.get(userId);
+        return presenceRegistry.isOnline(userId) || remotePresence.isOnline(userId);
     }
 }
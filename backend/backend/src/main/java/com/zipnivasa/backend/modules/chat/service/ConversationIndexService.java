@@ -0,0 +1,227 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.result.UpdateResult;
+import com.zipnivasa.backend.modules.chat.model.Conversation;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import com.zipnivasa.backend.modules.chat.repository.ConversationRepository;
+import com.zipnivasa.backend.modules.user.model.User;
+import com.zipnivasa.backend.modules.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Maintains the per-user "conversations" collection.
+ *
+ * Every message touches exactly two rows (sender's and receiver's),
+ * the partner snapshot is only looked up when a row is first created.
+ * Batches from the persistence pipeline go out as a single bulk write.
+ *
+ * Messages can arrive out of order (caller-thread writes, journal
+ * replay), so lastMessage / updatedAt only move forward in
+ * (createdAt, id) order; unreadCount counts every message either way.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationIndexService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+    private final ChatSyncService chatSyncService;
+
+    public void onMessageSent(Message m) {
+        onMessagesSent(List.of(m));
+    }
+
+    /**
+     * Applies a batch of messages with one bulk write, two upserts per
+     * message.
+     */
+    public void onMessagesSent(List<Message> messages) {
+        apply(messages, true);
+    }
+
+    // ChatIndexBackfill: rows without unread counts, those come from recountUnread
+    void applyLastMessages(List<Message> messages) {
+        apply(messages, false);
+    }
+
+    private void apply(List<Message> messages, boolean countUnread) {
+        if (messages.isEmpty()) return;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Conversation.class);
+        List<String[]> rows = new ArrayList<>(messages.size() * 2);
+
+        for (Message m : messages) {
+            ops.upsert(rowQuery(m.getSender(), m.getReceiver()), rowUpdate(m, false));
+            rows.add(new String[]{m.getSender(), m.getReceiver()});
+
+            ops.upsert(rowQuery(m.getReceiver(), m.getSender()), rowUpdate(m, countUnread && m.getReadAt() == null));
+            rows.add(new String[]{m.getReceiver(), m.getSender()});
+        }
+
+        BulkWriteResult result = ops.execute();
+
+        // new rows → fill the partner snapshot once
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            String[] row = rows.get(upsert.getIndex());
+            userRepository.findById(row[1]).ifPresent(user ->
+                    mongoTemplate.updateFirst(
+                            rowQuery(row[0], row[1]),
+                            new Update().set("partnerSnapshot", snapshotOf(user)),
+                            Conversation.class
+                    )
+            );
+        }
+    }
+
+    // sets every row's unreadCount from the unread messages (one aggregation)
+    void recountUnread() {
+        Aggregation unread = Aggregation.newAggregation(
+                Aggregation.match(where("readAt").is(null)),
+                Aggregation.group("receiver", "sender").count().as("count")
+        );
+
+        List<Document> counts = mongoTemplate.aggregate(unread, Message.class, Document.class).getMappedResults();
+        if (counts.isEmpty()) return;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (Document c : counts) {
+            Document key = c.get("_id", Document.class);
+            ops.updateOne(rowQuery(key.getString("receiver"), key.getString("sender")),
+                    new Update().set("unreadCount", ((Number) c.get("count")).longValue()));
+        }
+        ops.execute();
+    }
+
+    /**
+     * Recorded before the read messages are updated, so a message still in
+     * the persistence pipeline is marked read once it lands. Creates the row
+     * when the pair's first message has not landed yet.
+     */
+    public void markReadUpTo(String owner, String partner, Instant upTo) {
+        UpdateResult result = mongoTemplate.upsert(rowQuery(owner, partner),
+                new Update().max("readUpTo", upTo), Conversation.class);
+
+        if (result.getUpsertedId() != null) {
+            userRepository.findById(partner).ifPresent(user ->
+                    mongoTemplate.updateFirst(
+                            rowQuery(owner, partner),
+                            new Update().set("partnerSnapshot", snapshotOf(user)),
+                            Conversation.class
+                    )
+            );
+        }
+    }
+
+    // "owner:partner" → readUpTo, for the rows that have one
+    Map<String, Instant> readWatermarks(Collection<String> pairs) {
+        List<Criteria> rows = new ArrayList<>(pairs.size());
+        for (String pair : pairs) {
+            String[] parties = pair.split(":", 2);
+            rows.add(where("owner").is(parties[0]).and("partner").is(parties[1]));
+        }
+
+        Query query = new Query(new Criteria().orOperator(rows).and("readUpTo").ne(null));
+        query.fields().include("owner", "partner", "readUpTo");
+
+        Map<String, Instant> watermarks = new HashMap<>();
+        for (Conversation c : mongoTemplate.find(query, Conversation.class)) {
+            watermarks.put(c.getOwner() + ":" + c.getPartner(), c.getReadUpTo());
+        }
+        return watermarks;
+    }
+
+    // unreadCount -= count, never below 0
+    public void onRead(String myId, String partnerId, long count) {
+        Document remaining = new Document("$max", List.of(0L, new Document("$subtract", List.of(
+                new Document("$ifNull", List.of("$unreadCount", 0L)), count))));
+
+        mongoTemplate.updateFirst(
+                rowQuery(myId, partnerId),
+                AggregationUpdate.from(List.of(context -> new Document("$set", new Document("unreadCount", remaining)))),
+                Conversation.class
+        );
+    }
+
+    public List<Conversation> getInbox(String owner, int page, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        return conversationRepository.findByOwnerOrderByUpdatedAtDesc(
+                owner, PageRequest.of(Math.max(page, 0), pageSize));
+    }
+
+    // called from ProfileService when name / phone changes
+    public void refreshPartner(User user) {
+        Query query = new Query(where("partner").is(user.getId()));
+        Conversation.PartnerSnapshot snapshot = snapshotOf(user);
+
+        mongoTemplate.updateMulti(query, new Update().set("partnerSnapshot", snapshot), Conversation.class);
+
+        List<String> owners = mongoTemplate.findDistinct(query, "owner", Conversation.class, String.class);
+        chatSyncService.onPartnerUpdated(owners, snapshot);
+    }
+
+    /**
+     * Pipeline upsert: lastMessage / updatedAt are replaced only when m is
+     * newer than the row's lastMessage, unreadCount is bumped regardless.
+     */
+    private AggregationUpdate rowUpdate(Message m, boolean unread) {
+        Document lastMessage = (Document) mongoTemplate.getConverter().convertToMongoType(new Conversation.LastMessage(
+                m.getId(),
+                m.getSender(),
+                m.getReceiver(),
+                m.getMessage(),
+                m.getCreatedAt(),
+                m.getReadAt()
+        ));
+        Date createdAt = Date.from(m.getCreatedAt());
+
+        Document newer = new Document("$or", List.of(
+                new Document("$lt", List.of("$lastMessage.createdAt", createdAt)),
+                new Document("$and", List.of(
+                        new Document("$eq", List.of("$lastMessage.createdAt", createdAt)),
+                        new Document("$lt", List.of("$lastMessage._id", lastMessage.get("_id")))
+                ))
+        ));
+
+        Document set = new Document()
+                // $literal: message text is not an expression
+                .append("lastMessage", new Document("$cond", List.of(newer, new Document("$literal", lastMessage), "$lastMessage")))
+                .append("updatedAt", new Document("$cond", List.of(newer, createdAt, "$updatedAt")))
+                .append("unreadCount", new Document("$add", List.of(
+                        new Document("$ifNull", List.of("$unreadCount", 0L)), unread ? 1L : 0L)));
+
+        return AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+    }
+
+    private Query rowQuery(String owner, String partner) {
+        return new Query(where("owner").is(owner).and("partner").is(partner));
+    }
+
+    private Conversation.PartnerSnapshot snapshotOf(User user) {
+        return new Conversation.PartnerSnapshot(
+                user.getId(),
+                user.getName(),
+                user.getPhone(),
+                user.getRole()
+        );
+    }
+}
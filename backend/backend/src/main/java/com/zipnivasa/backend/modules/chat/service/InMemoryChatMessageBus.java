@@ -0,0 +1,66 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.dto.ChatBusEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus shared by every application context in this JVM.
+ * With a single node it is a no-op, with several contexts (tests)
+ * they behave like a cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryChatMessageBus implements ChatMessageBus {
+
+    private static final List<InMemoryChatMessageBus> NODES = new CopyOnWriteArrayList<>();
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<ChatBusEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void join() {
+        NODES.add(this);
+    }
+
+    @PreDestroy
+    public void leave() {
+        NODES.remove(this);
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(ChatBusEvent event) {
+        event.setOrigin(nodeId);
+        event.setAt(Instant.now());
+
+        for (InMemoryChatMessageBus node : NODES) {
+            if (node != this) {
+                node.dispatch(event);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ChatBusEvent> listener) {
+        listeners.add(listener);
+    }
+
+    private void dispatch(ChatBusEvent event) {
+        for (Consumer<ChatBusEvent> listener : listeners) {
+            listener.accept(event);
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.zipnivasa.backend.modules.chat.dto.DeliveryAckEvent;
+import com.zipnivasa.backend.modules.chat.dto.MessageResponse;
+import com.zipnivasa.backend.modules.chat.dto.ReadReceiptEvent;
+import com.zipnivasa.backend.modules.chat.dto.SendFailedEvent;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Write-behind persistence for chat messages sent over STOMP.
+ *
+ * - messages already carry their id / createdAt and are delivered before this runs
+ * - a bounded queue is drained by one flusher thread into insertMany batches
+ *   of up to batch-size, waiting at most linger-ms for a batch to fill
+ * - once a batch is durable the inbox rows, change log and search index are
+ *   updated and each sender gets a DeliveryAckEvent on /user/queue/acks
+ * - a mark-read that arrived while a message was in flight matched
+ *   nothing; its watermark (Conversation.readUpTo) is applied after the insert
+ * - when the queue is full the caller waits offer-timeout-ms and then writes
+ *   its message itself, which slows producers down instead of dropping;
+ *   that write is tried CALLER_ATTEMPTS times and then fails the send, so a
+ *   Mongo outage cannot hold the inbound channel threads indefinitely
+ * - with the ChatJournal on, every message is journaled first and a full
+ *   queue never blocks the caller: from the first overflow on, messages
+ *   stay in the journal only and are read back once the queue has
+ *   drained, as is anything left from before a restart
+ */
+@Service
+public class MessagePersistencePipeline {
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int CALLER_ATTEMPTS = 2;
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationIndexService conversationIndexService;
+    private final ChatSyncService chatSyncService;
+    private final ChatSearchService chatSearchService;
+    private final ChatWebSocketService webSocketService;
+    private final ChatJournal journal;
+    private final RecentSendCache recentSendCache;
+
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long offerTimeoutMs;
+    private final BlockingQueue<Message> buffer;
+
+    // lowest journal seq that did not fit into the buffer; set and cleared under spillLock
+    private final AtomicLong spilledFrom = new AtomicLong(Long.MAX_VALUE);
+    private final Object spillLock = new Object();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessagePersistencePipeline(
+            MongoTemplate mongoTemplate,
+            ConversationIndexService conversationIndexService,
+            ChatSyncService chatSyncService,
+            ChatSearchService chatSearchService,
+            ChatWebSocketService webSocketService,
+            ChatJournal journal,
+            RecentSendCache recentSendCache,
+            @Value("${chat.persistence.batch-size:200}") int batchSize,
+            @Value("${chat.persistence.linger-ms:20}") long lingerMs,
+            @Value("${chat.persistence.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${chat.persistence.offer-timeout-ms:50}") long offerTimeoutMs
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.conversationIndexService = conversationIndexService;
+        this.chatSyncService = chatSyncService;
+        this.chatSearchService = chatSearchService;
+        this.webSocketService = webSocketService;
+        this.journal = journal;
+        this.recentSendCache = recentSendCache;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        // records written before the last shutdown that never reached Mongo
+        if (journal.isEnabled() && journal.getLastSeq() > journal.getCheckpoint()) {
+            spilledFrom.set(journal.getCheckpoint() + 1);
+            System.out.println("Replaying " + (journal.getLastSeq() - journal.getCheckpoint()) + " journaled chat messages");
+        }
+
+        running = true;
+        flusher = new Thread(this::runLoop, "chat-persistence");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public void submit(Message message) {
+        long seq = journal.append(message);
+        if (seq > 0) {
+            // already durable; once spilled, later messages queue behind the
+            // spill in the journal instead of overtaking it in the buffer
+            if (spilledFrom.get() != Long.MAX_VALUE || !buffer.offer(message)) {
+                synchronized (spillLock) {
+                    spilledFrom.accumulateAndGet(seq, Math::min);
+                }
+            }
+            return;
+        }
+
+        boolean queued;
+        try {
+            queued = buffer.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        // backpressure: buffer is full, write on the caller's thread
+        if (!queued) {
+            persistNow(message);
+        }
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    // sends are acknowledged before they reach Mongo
+    public boolean isJournaled() {
+        return journal.isEnabled();
+    }
+
+    // ------------------- FLUSHER -----------------------
+    private void runLoop() {
+        List<Message> batch = new ArrayList<>(batchSize);
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                // older messages still buffered go first
+                if (spilledFrom.get() != Long.MAX_VALUE && buffer.isEmpty()) {
+                    replaySpilled();
+                }
+
+                Message first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                fill(batch);
+
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Journal records from the spill point up to the end seen when the
+     * cursor opened, in order. Spilling stops only if nothing was appended
+     * since; otherwise the next pass continues after that end.
+     */
+    private void replaySpilled() {
+        ChatJournal.Cursor cursor = journal.openCursor(spilledFrom.get());
+
+        List<Message> page;
+        while (!(page = cursor.next(batchSize)).isEmpty()) {
+            persist(page);
+        }
+
+        synchronized (spillLock) {
+            long replayedTo = cursor.getLastSeq();
+            spilledFrom.set(journal.getLastSeq() > replayedTo ? replayedTo + 1 : Long.MAX_VALUE);
+        }
+    }
+
+    // wait up to linger time for the batch to fill
+    private void fill(List<Message> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+
+        while (batch.size() < batchSize) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            long wait = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || wait <= 0) return;
+
+            Message next = buffer.poll(wait, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    // flusher: retries until the batch is written, gives up only on shutdown
+    private void persist(List<Message> batch) {
+        Inserted result;
+        int attempt = 0;
+        while (true) {
+            try {
+                result = insert(batch);
+                break;
+            } catch (RuntimeException e) {
+                attempt++;
+                if (!running && attempt >= 3) {
+                    System.err.println((journal.isEnabled() ? "Leaving " + batch.size() + " chat messages in the journal on shutdown: "
+                            : "Dropping " + batch.size() + " chat messages on shutdown: ") + e.getMessage());
+                    return;
+                }
+                sleepBackoff(attempt);
+            }
+        }
+
+        // a failed attempt may have written part of the batch already
+        afterWrite(batch, attempt > 0 ? result.withExisting() : result.written(), result.ghosts());
+    }
+
+    /**
+     * Caller's thread: a bounded number of attempts, then the exception
+     * reaches the sender instead of blocking the inbound channel.
+     */
+    private void persistNow(Message message) {
+        List<Message> batch = List.of(message);
+        Inserted result;
+        int attempt = 1;
+        while (true) {
+            try {
+                result = insert(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= CALLER_ATTEMPTS || !sleepBackoff(attempt)) throw e;
+                attempt++;
+            }
+        }
+
+        afterWrite(batch, attempt > 1 ? result.withExisting() : result.written(), result.ghosts());
+    }
+
+    // written = the part of batch that is new in Mongo, ghosts = clientMessageId clashes
+    private void afterWrite(List<Message> batch, List<Message> written, List<Message> ghosts) {
+        journal.markPersisted(batch);
+
+        try {
+            conversationIndexService.onMessagesSent(written);
+        } catch (RuntimeException e) {
+            System.err.println("Conversation index update failed: " + e.getMessage());
+        }
+
+        try {
+            chatSyncService.onMessagesSent(written);
+        } catch (RuntimeException e) {
+            System.err.println("Chat change log update failed: " + e.getMessage());
+        }
+
+        try {
+            chatSearchService.index(written);
+        } catch (RuntimeException e) {
+            System.err.println("Chat search index update failed: " + e.getMessage());
+        }
+
+        try {
+            applyReadWatermarks(written);
+        } catch (RuntimeException e) {
+            System.err.println("Chat read watermark not applied: " + e.getMessage());
+        }
+
+        if (ghosts.isEmpty()) {
+            sendAcks(batch);
+            return;
+        }
+
+        List<Message> acked = new ArrayList<>(batch);
+        acked.removeAll(ghosts);
+        sendAcks(acked);
+
+        for (Message ghost : ghosts) {
+            try {
+                replaceGhost(ghost);
+            } catch (RuntimeException e) {
+                System.err.println("Duplicate chat send " + ghost.getId() + " not resolved: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * ChatService.markAsRead stores its watermark before updating, this
+     * reads it after inserting: a message is either covered by that update
+     * or found here, and the readAt: null filter lets only one of both count it.
+     */
+    private void applyReadWatermarks(List<Message> written) {
+        // "receiver:sender" → unread messages
+        Map<String, List<Message>> byPair = new HashMap<>();
+        for (Message m : written) {
+            if (m.getReadAt() == null) {
+                byPair.computeIfAbsent(m.getReceiver() + ":" + m.getSender(), k -> new ArrayList<>()).add(m);
+            }
+        }
+        if (byPair.isEmpty()) return;
+
+        conversationIndexService.readWatermarks(byPair.keySet()).forEach((pair, watermark) -> {
+            List<String> ids = new ArrayList<>();
+            for (Message m : byPair.get(pair)) {
+                if (!m.getCreatedAt().isAfter(watermark)) ids.add(m.getId());
+            }
+            if (ids.isEmpty()) return;
+
+            String[] parties = pair.split(":", 2);
+            Instant now = Instant.now();
+            long updated = mongoTemplate.updateMulti(
+                    new Query(where("_id").in(ids).and("readAt").is(null)),
+                    new Update().set("readAt", now),
+                    Message.class
+            ).getModifiedCount();
+            if (updated == 0) return;
+
+            conversationIndexService.onRead(parties[0], parties[1], updated);
+            chatSyncService.onRead(parties[0], parties[1], watermark, now);
+            webSocketService.sendReadReceipt(parties[1], ReadReceiptEvent.builder()
+                    .reader(parties[0])
+                    .upTo(watermark)
+                    .readAt(now)
+                    .count(updated)
+                    .build());
+        });
+    }
+
+    /**
+     * Unordered insertMany. A duplicate _id is a retried batch or a journal
+     * replay: already in Mongo, left out of written so indexes are not
+     * updated twice. A duplicate (sender, clientMessageId) is a resend that
+     * got a new id (recent-send cache expired, another node): that ghost
+     * never reaches Mongo and is reported separately.
+     */
+    private Inserted insert(List<Message> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class)
+                    .insert(batch)
+                    .execute();
+            return new Inserted(batch, List.of(), List.of());
+        } catch (BulkOperationException e) {
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(err -> err.getCode() == DUPLICATE_KEY);
+            if (!onlyDuplicates) throw e;
+
+            Map<Integer, Boolean> duplicates = new HashMap<>();
+            e.getErrors().forEach(err -> duplicates.put(err.getIndex(), isIdDuplicate(err)));
+
+            List<Message> written = new ArrayList<>(batch.size() - duplicates.size());
+            List<Message> existing = new ArrayList<>();
+            List<Message> ghosts = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Boolean idDuplicate = duplicates.get(i);
+                if (idDuplicate == null) {
+                    written.add(batch.get(i));
+                } else if (idDuplicate) {
+                    existing.add(batch.get(i));
+                } else {
+                    ghosts.add(batch.get(i));
+                }
+            }
+            return new Inserted(written, existing, ghosts);
+        }
+    }
+
+    // the key pattern is in errInfo on servers that send it, otherwise only in the message
+    private static boolean isIdDuplicate(BulkWriteError err) {
+        BsonDocument keyPattern = err.getDetails().getDocument("keyPattern", null);
+        if (keyPattern != null) return keyPattern.containsKey("_id");
+
+        String message = err.getMessage();
+        return message != null && message.contains(" index: _id_ ");
+    }
+
+    /**
+     * The receiver already got the ghost's frame: redeliver the original so
+     * the client can collapse both by clientMessageId, and ack the original
+     * to the sender in place of the ghost. Later retries get the original.
+     */
+    private void replaceGhost(Message ghost) {
+        Message original = mongoTemplate.findOne(new Query(where("sender").is(ghost.getSender())
+                .and("clientMessageId").is(ghost.getClientMessageId())), Message.class);
+
+        if (original == null) {
+            webSocketService.sendError(ghost.getSender(), SendFailedEvent.builder()
+                    .clientMessageId(ghost.getClientMessageId())
+                    .receiver(ghost.getReceiver())
+                    .reason("Message could not be saved, try again")
+                    .build());
+            return;
+        }
+
+        MessageResponse response = MessageResponse.of(original);
+
+        recentSendCache.remove(ghost.getSender(), ghost.getClientMessageId());
+        recentSendCache.putIfAbsent(ghost.getSender(), ghost.getClientMessageId(), response);
+
+        webSocketService.sendPrivateMessage(original.getReceiver(), response);
+
+        webSocketService.sendDeliveryAck(ghost.getSender(), DeliveryAckEvent.builder()
+                .messageIds(List.of(original.getId()))
+                .duplicates(Map.of(ghost.getId(), original.getId()))
+                .persistedAt(Instant.now())
+                .build());
+    }
+
+    private void sendAcks(List<Message> batch) {
+        if (batch.isEmpty()) return;
+
+        Instant now = Instant.now();
+        Map<String, List<String>> idsBySender = new LinkedHashMap<>();
+        for (Message m : batch) {
+            idsBySender.computeIfAbsent(m.getSender(), k -> new ArrayList<>()).add(m.getId());
+        }
+
+        idsBySender.forEach((sender, ids) ->
+                webSocketService.sendDeliveryAck(sender, DeliveryAckEvent.builder()
+                        .messageIds(ids)
+                        .persistedAt(now)
+                        .build())
+        );
+    }
+
+    // false when interrupted; only an interrupted flusher stops the pipeline
+    private boolean sleepBackoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(1000L, 50L << Math.min(attempt, 5)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (Thread.currentThread() == flusher) {
+                running = false;
+            }
+            return false;
+        }
+    }
+
+    // existing = _id duplicates, ghosts = (sender, clientMessageId) duplicates
+    private record Inserted(List<Message> written, List<Message> existing, List<Message> ghosts) {
+
+        List<Message> withExisting() {
+            if (existing.isEmpty()) return written;
+            List<Message> all = new ArrayList<>(written);
+            all.addAll(existing);
+            return all;
+        }
+    }
+}
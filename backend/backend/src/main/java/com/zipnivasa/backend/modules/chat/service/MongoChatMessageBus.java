@@ -0,0 +1,136 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.mongodb.MongoException;
+import com.zipnivasa.backend.modules.chat.dto.ChatBusEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.TailableCursorRequest;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Bus over a capped "chat_bus" collection: every node inserts its events
+ * and follows the collection with a tailable cursor, starting at a marker
+ * it inserts on startup.
+ * Works on a standalone mongod, no replica set needed.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.bus.type", havingValue = "mongo")
+public class MongoChatMessageBus implements ChatMessageBus {
+
+    private static final String COLLECTION = "chat_bus";
+    private static final int NAMESPACE_EXISTS = 48;
+
+    private final MongoTemplate mongoTemplate;
+    private final long cappedSizeBytes;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<ChatBusEvent>> listeners = new CopyOnWriteArrayList<>();
+    private MessageListenerContainer container;
+
+    // set once the cursor reaches this node's startup marker
+    private volatile boolean caughtUp;
+
+    public MongoChatMessageBus(MongoTemplate mongoTemplate,
+                               @Value("${chat.bus.capped-size-bytes:67108864}") long cappedSizeBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.cappedSizeBytes = cappedSizeBytes;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!mongoTemplate.collectionExists(COLLECTION)) {
+            try {
+                mongoTemplate.createCollection(COLLECTION, CollectionOptions.empty().capped().size(cappedSizeBytes));
+            } catch (DataAccessException e) {
+                // another node created it first
+                if (!isNamespaceExists(e)) throw e;
+            }
+        }
+
+        // everything before this node's marker is history; natural order is
+        // insertion order, so this holds whatever the clocks of the other nodes say.
+        // The marker also keeps the collection non-empty, a tailable cursor
+        // on an empty capped collection dies right away
+        mongoTemplate.insert(ChatBusEvent.builder()
+                .origin(nodeId)
+                .at(Instant.now())
+                .build(), COLLECTION);
+
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        container.start();
+
+        // events from other nodes, plus the markers (no type)
+        Query filter = new Query(new Criteria().orOperator(
+                where("origin").ne(nodeId),
+                where("type").is(null)));
+
+        TailableCursorRequest<ChatBusEvent> request = TailableCursorRequest.<ChatBusEvent>builder(this::onMessage)
+                .collection(COLLECTION)
+                .filter(filter)
+                .build();
+
+        container.register(request, ChatBusEvent.class);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(ChatBusEvent event) {
+        event.setOrigin(nodeId);
+        event.setAt(Instant.now());
+        mongoTemplate.insert(event, COLLECTION);
+    }
+
+    @Override
+    public void subscribe(Consumer<ChatBusEvent> listener) {
+        listeners.add(listener);
+    }
+
+    private void onMessage(Message<Document, ChatBusEvent> message) {
+        ChatBusEvent event = message.getBody();
+        if (event == null) return;
+
+        if (event.getType() == null) {
+            if (nodeId.equals(event.getOrigin())) caughtUp = true;
+            return;
+        }
+        if (!caughtUp) return;
+
+        for (Consumer<ChatBusEvent> listener : listeners) {
+            listener.accept(event);
+        }
+    }
+
+    private static boolean isNamespaceExists(DataAccessException e) {
+        return e.getMostSpecificCause() instanceof MongoException cause && cause.getCode() == NAMESPACE_EXISTS;
+    }
+}
@@ -0,0 +1,139 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * userId → set of STOMP sessions on this node.
+ *
+ * A user is online while they have at least one session, so a second tab
+ * or device does not overwrite the first and closing one of them does
+ * not mark the user offline.
+ *
+ * Every inbound frame (heartbeats included) touches its session, so a
+ * session whose disconnect event never arrived shows up in findStale.
+ */
+@Component
+public class PresenceRegistry {
+
+    // userId → (sessionId → session)
+    private final Map<String, Map<String, SessionInfo>> sessionsByUser = new ConcurrentHashMap<>();
+
+    // sessionId → session
+    private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * @param heartbeatMs negotiated client → server heartbeat interval, 0 = none
+     * @return true if this is the user's first session (offline → online)
+     */
+    public boolean register(String userId, String sessionId, long heartbeatMs) {
+        SessionInfo info = new SessionInfo(sessionId, userId, Instant.now(), heartbeatMs);
+        sessions.put(sessionId, info);
+
+        boolean[] first = {false};
+        sessionsByUser.compute(userId, (k, userSessions) -> {
+            if (userSessions == null) {
+                userSessions = new ConcurrentHashMap<>();
+                first[0] = true;
+            }
+            userSessions.put(sessionId, info);
+            return userSessions;
+        });
+        return first[0];
+    }
+
+    /**
+     * @return the userId if this was their last session (online → offline), otherwise null
+     */
+    public String unregister(String sessionId) {
+        SessionInfo info = sessions.remove(sessionId);
+        if (info == null) return null;
+
+        boolean[] last = {false};
+        sessionsByUser.computeIfPresent(info.getUserId(), (k, userSessions) -> {
+            userSessions.remove(sessionId);
+            if (userSessions.isEmpty()) {
+                last[0] = true;
+                return null;
+            }
+            return userSessions;
+        });
+        return last[0] ? info.getUserId() : null;
+    }
+
+    public void touch(String sessionId) {
+        SessionInfo info = sessions.get(sessionId);
+        if (info != null) {
+            info.lastHeartbeat = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Heartbeating sessions silent for longer than staleAfterMs (and three of
+     * their own heartbeat intervals). Sessions without heartbeats are never
+     * stale, an idle one cannot be told apart from a dead one.
+     */
+    public List<SessionInfo> findStale(long now, long staleAfterMs) {
+        List<SessionInfo> stale = new ArrayList<>();
+        for (SessionInfo info : sessions.values()) {
+            if (info.isStale(now, staleAfterMs)) {
+                stale.add(info);
+            }
+        }
+        return stale;
+    }
+
+    public boolean isOnline(String userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public Set<String> getOnlineUserIds() {
+        return Set.copyOf(sessionsByUser.keySet());
+    }
+
+    public Collection<SessionInfo> getSessions(String userId) {
+        Map<String, SessionInfo> userSessions = sessionsByUser.get(userId);
+        return userSessions == null ? List.of() : List.copyOf(userSessions.values());
+    }
+
+    public SessionInfo getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public int getOnlineUserCount() {
+        return sessionsByUser.size();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    @Getter
+    public static class SessionInfo {
+        private final String sessionId;
+        private final String userId;
+        private final Instant connectedAt;
+        private final long heartbeatMs;
+        private volatile long lastHeartbeat;
+
+        SessionInfo(String sessionId, String userId, Instant connectedAt, long heartbeatMs) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.connectedAt = connectedAt;
+            this.heartbeatMs = heartbeatMs;
+            this.lastHeartbeat = connectedAt.toEpochMilli();
+        }
+
+        public boolean isStale(long now, long staleAfterMs) {
+            return heartbeatMs > 0 && now - lastHeartbeat > Math.max(staleAfterMs, 3 * heartbeatMs);
+        }
+    }
+}
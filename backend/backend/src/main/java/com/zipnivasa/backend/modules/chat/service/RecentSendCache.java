@@ -0,0 +1,63 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.zipnivasa.backend.modules.chat.dto.MessageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of recent sends keyed by (sender, clientMessageId).
+ * Answers retries without a database round trip; older ids fall back to
+ * the unique sender_clientMessageId index on messages.
+ */
+@Component
+public class RecentSendCache {
+
+    private final Map<String, MessageResponse> recent;
+    private final Counter hits;
+
+    public RecentSendCache(MeterRegistry meterRegistry,
+                           @Value("${chat.idempotency.cache-size:100000}") int maxSize) {
+        this.recent = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MessageResponse> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = meterRegistry.counter("chat.send.deduplicated");
+    }
+
+    public MessageResponse get(String senderId, String clientMessageId) {
+        MessageResponse previous;
+        synchronized (recent) {
+            previous = recent.get(key(senderId, clientMessageId));
+        }
+        if (previous != null) hits.increment();
+        return previous;
+    }
+
+    /** @return the response already stored for this id, or null if this one was stored */
+    public MessageResponse putIfAbsent(String senderId, String clientMessageId, MessageResponse response) {
+        MessageResponse previous;
+        synchronized (recent) {
+            previous = recent.putIfAbsent(key(senderId, clientMessageId), response);
+        }
+        if (previous != null) hits.increment();
+        return previous;
+    }
+
+    // a claimed id whose send failed, so a retry is processed again
+    public void remove(String senderId, String clientMessageId) {
+        synchronized (recent) {
+            recent.remove(key(senderId, clientMessageId));
+        }
+    }
+
+    private String key(String senderId, String clientMessageId) {
+        return senderId + ":" + clientMessageId;
+    }
+}
@@ -0,0 +1,90 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users connected to other chat nodes, as last announced over the bus.
+ * Nodes that stop announcing are expired together with their users.
+ */
+@Component
+public class RemotePresence {
+
+    // nodeId → node
+    private final Map<String, RemoteNode> nodes = new ConcurrentHashMap<>();
+
+    public boolean isOnline(String userId) {
+        for (RemoteNode node : nodes.values()) {
+            if (node.users.contains(userId)) return true;
+        }
+        return false;
+    }
+
+    public void set(String nodeId, String userId, boolean online) {
+        RemoteNode node = node(nodeId);
+        if (online) {
+            node.users.add(userId);
+        } else {
+            node.users.remove(userId);
+        }
+    }
+
+    /**
+     * Replaces the user set of a node.
+     * @return users that were added or removed
+     */
+    public Set<String> replace(String nodeId, Collection<String> users) {
+        RemoteNode node = node(nodeId);
+        Set<String> incoming = new HashSet<>(users);
+
+        Set<String> affected = new HashSet<>();
+        for (String u : node.users) {
+            if (!incoming.contains(u)) affected.add(u);
+        }
+        for (String u : incoming) {
+            if (!node.users.contains(u)) affected.add(u);
+        }
+
+        node.users.retainAll(incoming);
+        node.users.addAll(incoming);
+        return affected;
+    }
+
+    /**
+     * Drops nodes not heard from since the given time.
+     * @return users of the dropped nodes
+     */
+    public Set<String> expire(long staleBeforeMs) {
+        Set<String> affected = new HashSet<>();
+        Iterator<RemoteNode> it = nodes.values().iterator();
+        while (it.hasNext()) {
+            RemoteNode node = it.next();
+            if (node.lastSeen < staleBeforeMs) {
+                affected.addAll(node.users);
+                it.remove();
+            }
+        }
+        return affected;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    private RemoteNode node(String nodeId) {
+        RemoteNode node = nodes.computeIfAbsent(nodeId, k -> new RemoteNode());
+        node.lastSeen = System.currentTimeMillis();
+        return node;
+    }
+
+    private static class RemoteNode {
+        private final Set<String> users = ConcurrentHashMap.newKeySet();
+        private volatile long lastSeen;
+    }
+}
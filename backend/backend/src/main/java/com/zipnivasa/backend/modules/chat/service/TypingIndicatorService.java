@@ -0,0 +1,220 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side typing state per (sender, receiver) pair.
+ *
+ * - only idle → typing and typing → idle transitions are forwarded,
+ *   repeated typing frames just push the timeout back
+ * - a new typing start is forwarded at most once per min-interval-ms
+ * - a pair with no typing frame for timeout-ms gets an automatic stop
+ *
+ * Timeouts live in one hashed timer wheel driven by a single thread
+ * instead of one scheduled task per pair.
+ */
+@Service
+public class TypingIndicatorService {
+
+    private final ChatWebSocketService webSocketService;
+
+    private final long timeoutMs;
+    private final long minIntervalMs;
+    private final long tickMs;
+
+    // "sender:receiver" → state
+    private final Map<String, TypingState> states = new ConcurrentHashMap<>();
+
+    private final List<Queue<String>> wheel;
+    private long tick;
+    private ScheduledExecutorService ticker;
+
+    private final Counter forwarded;
+    private final Counter suppressed;
+    private final Counter timeouts;
+
+    public TypingIndicatorService(
+            ChatWebSocketService webSocketService,
+            MeterRegistry meterRegistry,
+            @Value("${chat.typing.timeout-ms:5000}") long timeoutMs,
+            @Value("${chat.typing.min-interval-ms:1000}") long minIntervalMs,
+            @Value("${chat.typing.tick-ms:100}") long tickMs,
+            @Value("${chat.typing.wheel-size:128}") int wheelSize
+    ) {
+        this.webSocketService = webSocketService;
+        this.timeoutMs = timeoutMs;
+        this.minIntervalMs = minIntervalMs;
+        this.tickMs = tickMs;
+
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+
+        this.forwarded = meterRegistry.counter("chat.typing.forwarded");
+        this.suppressed = meterRegistry.counter("chat.typing.suppressed");
+        this.timeouts = meterRegistry.counter("chat.typing.timeouts");
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-typing-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    public void onTyping(String sender, String receiver) {
+        String key = sender + ":" + receiver;
+        long now = System.currentTimeMillis();
+
+        boolean forward = false;
+        boolean applied = false;
+        while (!applied) {
+            TypingState state = states.computeIfAbsent(key, k -> new TypingState(sender, receiver));
+            synchronized (state) {
+                // lost a race with the wheel evicting this pair, take the new entry
+                if (state.removed) continue;
+                applied = true;
+
+                state.deadline = now + timeoutMs;
+
+                if (!state.typing && now - state.lastStartAt >= minIntervalMs) {
+                    state.typing = true;
+                    state.lastStartAt = now;
+                    forward = true;
+
+                    if (!state.scheduled) {
+                        state.scheduled = true;
+                        schedule(key, timeoutMs);
+                    }
+                }
+            }
+        }
+
+        if (forward) {
+            webSocketService.sendTyping(receiver, sender);
+            forwarded.increment();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    public void onStopTyping(String sender, String receiver) {
+        TypingState state = states.get(sender + ":" + receiver);
+
+        boolean forward = false;
+        if (state != null) {
+            synchronized (state) {
+                if (state.typing) {
+                    state.typing = false;
+                    forward = true;
+                }
+            }
+        }
+
+        if (forward) {
+            webSocketService.sendStopTyping(receiver, sender);
+            forwarded.increment();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    // ------------------- TIMER WHEEL -----------------------
+    // only called from the ticker thread or under the state lock
+    private synchronized void schedule(String key, long delayMs) {
+        long ticks = Math.max(1, Math.min((delayMs + tickMs - 1) / tickMs, wheel.size() - 1));
+        wheel.get((int) ((tick + ticks) % wheel.size())).add(key);
+    }
+
+    private void advance() {
+        Queue<String> bucket;
+        synchronized (this) {
+            tick++;
+            bucket = wheel.get((int) (tick % wheel.size()));
+        }
+
+        long now = System.currentTimeMillis();
+        String key;
+        while ((key = bucket.poll()) != null) {
+            try {
+                expire(key, now);
+            } catch (RuntimeException e) {
+                System.err.println("Typing timeout failed for " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void expire(String key, long now) {
+        TypingState state = states.get(key);
+        if (state == null) return;
+
+        boolean timedOut = false;
+        synchronized (state) {
+            if (state.typing && state.deadline > now) {
+                // still typing, the deadline moved since this entry was added
+                schedule(key, state.deadline - now);
+                return;
+            }
+
+            if (state.typing) {
+                state.typing = false;
+                timedOut = true;
+            }
+
+            // keep the entry until the rate-limit window has passed
+            long idleFor = now - state.lastStartAt;
+            if (idleFor >= minIntervalMs) {
+                state.scheduled = false;
+                state.removed = true;
+                states.remove(key, state);
+            } else {
+                schedule(key, minIntervalMs - idleFor);
+            }
+        }
+
+        if (timedOut) {
+            webSocketService.sendStopTyping(state.receiver, state.sender);
+            timeouts.increment();
+        }
+    }
+
+    private static class TypingState {
+        private final String sender;
+        private final String receiver;
+        private boolean typing;
+        private boolean scheduled;
+        private boolean removed;
+        private long deadline;
+        private long lastStartAt;
+
+        TypingState(String sender, String receiver) {
+            this.sender = sender;
+            this.receiver = receiver;
+            this.lastStartAt = Long.MIN_VALUE / 2;
+        }
+    }
+}
@@ -35,6 +35,8 @@ public class MessController {
             @RequestParam String title,
             @RequestParam String description,
             @RequestParam String location,
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
             @RequestParam Double price,
             @RequestParam String type,
             @RequestParam Integer capacity,
@@ -58,6 +60,8 @@ public class MessController {
         req.setTitle(title);
         req.setDescription(description);
         req.setLocation(location);
+        req.setLatitude(latitude);
+        req.setLongitude(longitude);
         req.setPrice(price);
         req.setType(type);
         req.setCapacity(capacity);
@@ -80,7 +84,13 @@ public class MessController {
             req.setImages(saved);
         }
 
-        Mess saved = messService.addMess(req);
+        Mess saved;
+        try {
+            saved = messService.addMess(req);
+        } catch (IllegalArgumentException ex) {
+            // bad coordinates
+            return ResponseEntity.badRequest().body(ApiResponse.failure(ex.getMessage()));
+        }
 
         return ResponseEntity.ok(ApiResponse.success("Mess added successfully!", saved));
     }
@@ -92,6 +102,23 @@ public class MessController {
     }
 
 
+    // GET /api/mess/nearby?lat=&lng=&radiusKm=5&maxPrice=&type=&limit=20
+    @GetMapping("/nearby")
+    public ResponseEntity<?> nearby(@RequestParam double lat,
+                                    @RequestParam double lng,
+                                    @RequestParam(defaultValue = "5") double radiusKm,
+                                    @RequestParam(required = false) Double maxPrice,
+                                    @RequestParam(required = false) String type,
+                                    @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Messes fetched",
+                    messService.nearby(lat, lng, radiusKm, maxPrice, type, limit)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getMessById(@PathVariable String id) {
         Mess mess = messService.getById(id);
@@ -10,6 +10,8 @@ public class MessRequest {
     private String title;
     private String description;
     private String location;
+    private Double latitude;
+    private Double longitude;
     private Double price;
     private String type;
     private Integer capacity;
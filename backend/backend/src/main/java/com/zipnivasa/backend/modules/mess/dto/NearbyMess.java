@@ -0,0 +1,12 @@
+package com.zipnivasa.backend.modules.mess.dto;
+
+import com.zipnivasa.backend.modules.mess.model.Mess;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class NearbyMess {
+    private Mess mess;
+    private double distanceKm;
+}
@@ -1,18 +1,35 @@
 package com.zipnivasa.backend.modules.mess.service;
 
+import com.zipnivasa.backend.common.geo.GeoPoints;
 import com.zipnivasa.backend.modules.mess.dto.MessRequest;
+import com.zipnivasa.backend.modules.mess.dto.NearbyMess;
 import com.zipnivasa.backend.modules.mess.model.Mess;
 import com.zipnivasa.backend.modules.mess.repository.MessRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class MessService {
 
+    private static final int MAX_NEARBY = 50;
+
+    // a nearby result is a card: no description, menu or ratings, first image only
+    private static final String[] NEARBY_FIELDS = {"messOwnerId", "title", "location", "position", "price",
+            "type", "capacity", "contact", "specialToday", "createdAt", "updatedAt"};
+
     private final MessRepository messRepository;
+    private final MongoTemplate mongoTemplate;
 
     public Mess addMess(MessRequest req) {
         Mess mess = Mess.builder()
@@ -20,6 +37,7 @@ public class MessService {
                 .title(req.getTitle())
                 .description(req.getDescription())
                 .location(req.getLocation())
+                .position(GeoPoints.of(req.getLatitude(), req.getLongitude()))
                 .price(req.getPrice())
                 .type(req.getType())
                 .capacity(req.getCapacity())
@@ -35,6 +53,25 @@ public class MessService {
         return messRepository.findAll();
     }
 
+    // messes with coordinates within radiusKm, nearest first
+    public List<NearbyMess> nearby(double latitude, double longitude, double radiusKm,
+                                   Double maxPrice, String type, int limit) {
+        Criteria filter = new Criteria();
+        if (maxPrice != null) filter.and("price").lte(maxPrice);
+        if (type != null && !type.isBlank()) filter.and("type").is(type);
+
+        NearQuery near = NearQuery.near(GeoPoints.of(latitude, longitude), Metrics.KILOMETERS)
+                .maxDistance(new Distance(GeoPoints.radiusKm(radiusKm), Metrics.KILOMETERS))
+                .query(new Query(filter))
+                .limit(Math.min(Math.max(limit, 1), MAX_NEARBY));
+
+        List<NearbyMess> result = new ArrayList<>();
+        for (GeoResult<Mess> hit : GeoPoints.near(mongoTemplate, near, Mess.class, NEARBY_FIELDS)) {
+            result.add(new NearbyMess(hit.getContent(), hit.getDistance().getValue()));
+        }
+        return result;
+    }
+
     public Mess getById(String id) {
         return messRepository.findById(id).orElse(null);
     }
@@ -48,6 +85,10 @@ public class MessService {
             mess.setTitle(req.getTitle());
             mess.setDescription(req.getDescription());
             mess.setLocation(req.getLocation());
+            // keep the old point when the update does not carry one
+            if (req.getLatitude() != null && req.getLongitude() != null) {
+                mess.setPosition(GeoPoints.of(req.getLatitude(), req.getLongitude()));
+            }
             mess.setPrice(req.getPrice());
             mess.setType(req.getType());
             mess.setCapacity(req.getCapacity());
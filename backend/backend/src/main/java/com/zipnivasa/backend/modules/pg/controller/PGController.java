@@ -5,11 +5,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zipnivasa.backend.common.file.FileStorageService;
 import com.zipnivasa.backend.common.payload.ApiResponse;
 import com.zipnivasa.backend.config.JwtAuthenticationFilter;
+import com.zipnivasa.backend.modules.pg.dto.PGQuery;
 import com.zipnivasa.backend.modules.pg.dto.PGRequest;
 import com.zipnivasa.backend.modules.pg.model.PG;
+import com.zipnivasa.backend.modules.pg.service.PGQueryService;
 import com.zipnivasa.backend.modules.pg.service.PGService;
-import com.zipnivasa.backend.modules.user.model.User;
-import com.zipnivasa.backend.modules.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/pgs")
@@ -30,13 +29,14 @@ import java.util.Optional;
 public class PGController {
 
     private final PGService pgService;
-    private final UserRepository userRepository;
+    private final PGQueryService pgQueryService;
     private final FileStorageService fileStorageService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * GET /api/pgs
      * Like Node: returns array of PGs (not wrapped).
+     * Unbounded, kept for old clients; listings should use /api/pgs/search.
      */
     @GetMapping
     public ResponseEntity<List<PG>> getAllPGs() {
@@ -44,11 +44,42 @@ public class PGController {
         return ResponseEntity.ok(list);
     }
 
+    /**
+     * GET /api/pgs/search?location=&minRent=&maxRent=&maxDeposit=&occupancyType=
+     *     &propertyType=&amenities=WiFi,AC&available=&sort=NEWEST|RENT_ASC|RENT_DESC&cursor=&limit=
+     * Paginated listing summaries, pass nextCursor back for the next page.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchPGs(@ModelAttribute PGQuery query) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("PGs fetched", pgQueryService.search(query)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/pgs/nearby?lat=&lng=&radiusKm=5 plus the /search filters
+     * PGs with coordinates within radiusKm (max 50), nearest first, each with distanceKm.
+     */
+    @GetMapping("/nearby")
+    public ResponseEntity<?> nearbyPGs(@RequestParam double lat,
+                                       @RequestParam double lng,
+                                       @RequestParam(defaultValue = "5") double radiusKm,
+                                       @ModelAttribute PGQuery query) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("PGs fetched",
+                    pgQueryService.nearby(lat, lng, radiusKm, query)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
     /**
      * GET /api/pgs/{id}
      * Node version:
      *  - finds PG by id
-     *  - populates owner with name, email, phone, role
+     *  - populates owner with name, email, phone, role (here: PG.ownerSnapshot)
      *  - returns { success, pg, ownerDetails }
      */
     @GetMapping("/{id}")
@@ -58,17 +89,11 @@ public class PGController {
             return ResponseEntity.status(404)
                     .body(ApiResponse.failure("PG not found"));
         }
+        pgService.recordView(id);
 
-        Optional<User> ownerOpt = userRepository.findById(pg.getOwner());
-        Map<String, Object> ownerDetails = ownerOpt
-                .map(u -> Map.<String, Object>of(
-                        "id", u.getId(),
-                        "name", u.getName(),
-                        "email", u.getEmail(),
-                        "phone", u.getPhone(),
-                        "role", u.getRole()
-                ))
-                .orElse(Collections.emptyMap());
+        // embedded on the PG, no user lookup
+        PG.OwnerSnapshot snapshot = pgService.getOwnerDetails(pg);
+        Object ownerDetails = snapshot != null ? snapshot : Collections.emptyMap();
 
         // Mimic your Node response
         return ResponseEntity.ok(Map.of(
@@ -78,6 +103,18 @@ public class PGController {
         ));
     }
 
+    /**
+     * POST /api/pgs/{id}/inquiry
+     * Called when a tenant contacts the owner about this PG.
+     */
+    @PostMapping("/{id}/inquiry")
+    public ResponseEntity<?> recordInquiry(@PathVariable String id) {
+        if (!pgService.recordInquiry(id)) {
+            return ResponseEntity.status(404).body(ApiResponse.failure("PG not found"));
+        }
+        return ResponseEntity.ok(ApiResponse.success("Inquiry recorded", null));
+    }
+
     /**
      * GET /api/pgs/owner/list
      * Requires JWT (protect)
@@ -106,6 +143,7 @@ public class PGController {
      * Frontend sends:
      *  - title, propertyType, location, address, monthlyRent, deposit,
      *    occupancyType, amenities (JSON string), description
+     *  - optional latitude, longitude (for /nearby)
      *  - images[]: files
      */
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -114,6 +152,8 @@ public class PGController {
             @RequestParam String propertyType,
             @RequestParam String location,
             @RequestParam String address,
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
             @RequestParam Double monthlyRent,
             @RequestParam Double deposit,
             @RequestParam String occupancyType,
@@ -139,6 +179,8 @@ public class PGController {
             req.setPropertyType(propertyType);
             req.setLocation(location);
             req.setAddress(address);
+            req.setLatitude(latitude);
+            req.setLongitude(longitude);
             req.setMonthlyRent(monthlyRent);
             req.setDeposit(deposit);
             req.setOccupancyType(occupancyType);
@@ -175,6 +217,9 @@ public class PGController {
                     "message", "PG listing created successfully",
                     "pg", created
             ));
+        } catch (IllegalArgumentException ex) {
+            // bad coordinates
+            return ResponseEntity.badRequest().body(ApiResponse.failure(ex.getMessage()));
         } catch (Exception ex) {
             ex.printStackTrace();
             return ResponseEntity.internalServerError()
@@ -0,0 +1,11 @@
+package com.zipnivasa.backend.modules.pg.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class NearbyPG {
+    private PGSummary pg;
+    private double distanceKm;
+}
@@ -0,0 +1,18 @@
+package com.zipnivasa.backend.modules.pg.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of listings. Pass nextCursor back (same filters and sort)
+ * for the next page; it is null on the last one.
+ */
+@Data
+@Builder
+public class PGPage {
+    private List<PGSummary> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,34 @@
+package com.zipnivasa.backend.modules.pg.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Filters for GET /api/pgs/search, bound from query parameters.
+ * Null filters are not applied; available defaults to true.
+ */
+@Data
+public class PGQuery {
+
+    public enum Sort { NEWEST, RENT_ASC, RENT_DESC }
+
+    private Double minRent;
+    private Double maxRent;
+    private Double maxDeposit;
+
+    private String occupancyType;
+    private String propertyType;
+    private String location;
+
+    // all of them must be present
+    private List<String> amenities;
+
+    private Boolean available = true;
+
+    private Sort sort = Sort.NEWEST;
+
+    // nextCursor of the previous page
+    private String cursor;
+    private int limit = 20;
+}
@@ -12,6 +12,10 @@ public class PGRequest {
     private String location;
     private String address;
 
+    // optional, both or neither
+    private Double latitude;
+    private Double longitude;
+
     private Double monthlyRent;
     private Double deposit;
     private String occupancyType;
@@ -0,0 +1,52 @@
+package com.zipnivasa.backend.modules.pg.dto;
+
+import com.zipnivasa.backend.common.geo.GeoPoints;
+import com.zipnivasa.backend.modules.pg.model.PG;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A PG as shown in listings: no description, only the cover image.
+ * The full document stays behind GET /api/pgs/{id}.
+ */
+@Data
+@Builder
+public class PGSummary {
+    private String id;
+    private String title;
+    private String propertyType;
+    private String location;
+    private Double latitude;
+    private Double longitude;
+    private Double monthlyRent;
+    private Double deposit;
+    private String occupancyType;
+    private List<String> amenities;
+    private String coverImage;
+    private Integer beds;
+    private Boolean available;
+    private Instant createdAt;
+
+    // images may be sliced to the first one
+    public static PGSummary of(PG pg) {
+        return PGSummary.builder()
+                .id(pg.getId())
+                .title(pg.getTitle())
+                .propertyType(pg.getPropertyType())
+                .location(pg.getLocation())
+                .latitude(GeoPoints.latitude(pg.getPosition()))
+                .longitude(GeoPoints.longitude(pg.getPosition()))
+                .monthlyRent(pg.getMonthlyRent())
+                .deposit(pg.getDeposit())
+                .occupancyType(pg.getOccupancyType())
+                .amenities(pg.getAmenities())
+                .coverImage(pg.getImages() == null || pg.getImages().isEmpty() ? null : pg.getImages().get(0))
+                .beds(pg.getBeds())
+                .available(pg.getAvailable())
+                .createdAt(pg.getCreatedAt())
+                .build();
+    }
+}
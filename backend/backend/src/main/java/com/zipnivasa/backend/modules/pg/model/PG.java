@@ -1,16 +1,34 @@
 package com.zipnivasa.backend.modules.pg.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @Document(collection = "pgs")
+// listing queries: equality (locationKey, available), then the sort key, then _id for keyset paging
+@CompoundIndexes({
+        @CompoundIndex(name = "available_createdAt", def = "{'available': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "available_monthlyRent", def = "{'available': 1, 'monthlyRent': 1, '_id': 1}"),
+        @CompoundIndex(name = "locationKey_available_createdAt",
+                def = "{'locationKey': 1, 'available': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "locationKey_available_monthlyRent",
+                def = "{'locationKey': 1, 'available': 1, 'monthlyRent': 1, '_id': 1}"),
+        @CompoundIndex(name = "owner_createdAt", def = "{'owner': 1, 'createdAt': -1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -25,6 +43,13 @@ public class PG {
     private String location;
     private String address;
 
+    // location trimmed + lower-cased, what the listing filter matches on
+    private String locationKey;
+
+    // [longitude, latitude]; null until the owner or GeoBackfill sets it
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position;
+
     private Double monthlyRent;
     private Double deposit;
     private String occupancyType;
@@ -40,12 +65,21 @@ public class PG {
     // owner = User._id
     private String owner;
 
+    // copy of the owner's contact details for the detail page, kept current by
+    // PGService.refreshOwner (profile updates); only served as the detail's ownerDetails
+    @JsonIgnore
+    private OwnerSnapshot ownerSnapshot;
+
     @Builder.Default
     private Integer views = 0;
 
     @Builder.Default
     private Integer inquiries = 0;
 
+    // tokens of the last counter flushes applied here, see PGCounterService
+    @JsonIgnore
+    private List<String> counterFlushes;
+
     @Builder.Default
     private Integer beds = 1;
 
@@ -55,6 +89,23 @@ public class PG {
     @CreatedDate
     private Instant createdAt;
 
+    // PGListingIndex.refresh reads changes by it
     @LastModifiedDate
+    @Indexed
     private Instant updatedAt;
+
+    public static String locationKeyOf(String location) {
+        return location == null ? null : location.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OwnerSnapshot {
+        private String id;
+        private String name;
+        private String email;
+        private String phone;
+        private String role;
+    }
 }
@@ -0,0 +1,187 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.modules.pg.model.PG;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * PG view / inquiry counters, buffered in memory and written as one
+ * unordered bulk of $inc per flush (interval and shutdown) instead of a
+ * document save per request.
+ *
+ * Each PG keeps two LongAdders for its lifetime plus the totals already
+ * flushed, so recording is an increment without allocation or locking
+ * and a flush never loses a concurrent increment. The map holds at most
+ * one entry per PG.
+ *
+ * Only this node's unflushed counts are merged on reads; other nodes'
+ * show up after their next flush.
+ *
+ * A flush is idempotent: every update carries the flush's token, is
+ * filtered on PG.counterFlushes not containing it and pushes it there
+ * (the last FLUSH_TOKENS kept). When the outcome of a bulk is unknown
+ * (timeout, lost connection) the same updates with the same token are
+ * sent again before anything new, so a bulk the server did apply is not
+ * counted twice. merge uses the token too: a PG read after the bulk but
+ * before flush marked it applied gets the in-flight totals as its base.
+ * A PG read just before the bulk and merged just after can still show
+ * the flushed delta missing until the next read.
+ */
+@Service
+@RequiredArgsConstructor
+public class PGCounterService {
+
+    // tokens kept per PG: a retry is recognised unless this many other flushes got in between
+    private static final int FLUSH_TOKENS = 16;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    // a bulk whose outcome is unknown, sent again as is; guarded by this
+    private Flush unconfirmed;
+
+    public void recordView(String pgId) {
+        countersOf(pgId).views.increment();
+    }
+
+    public void recordInquiry(String pgId) {
+        countersOf(pgId).inquiries.increment();
+    }
+
+    // adds what this node has not flushed yet to views / inquiries
+    public PG merge(PG pg) {
+        if (pg == null) return null;
+
+        Counters c = counters.get(pg.getId());
+        if (c != null) {
+            // pendingToken is written after pendingViews / pendingInquiries and cleared after flushed*
+            String token = c.pendingToken;
+            boolean inFlightApplied = token != null && pg.getCounterFlushes() != null
+                    && pg.getCounterFlushes().contains(token);
+
+            long baseViews = inFlightApplied ? c.pendingViews : c.flushedViews;
+            long baseInquiries = inFlightApplied ? c.pendingInquiries : c.flushedInquiries;
+
+            pg.setViews(orZero(pg.getViews()) + (int) (c.views.sum() - baseViews));
+            pg.setInquiries(orZero(pg.getInquiries()) + (int) (c.inquiries.sum() - baseInquiries));
+        }
+        return pg;
+    }
+
+    private Counters countersOf(String pgId) {
+        Counters c = counters.get(pgId);
+        return c != null ? c : counters.computeIfAbsent(pgId, k -> new Counters());
+    }
+
+    // ------------------- FLUSH -----------------------
+    @Scheduled(fixedDelayString = "${pg.counters.flush-ms:5000}")
+    public synchronized void flush() {
+        if (unconfirmed != null && !execute(unconfirmed)) return;
+
+        Flush next = new Flush(new ObjectId().toHexString());
+        for (Map.Entry<String, Counters> e : counters.entrySet()) {
+            Counters c = e.getValue();
+            long views = c.views.sum();
+            long inquiries = c.inquiries.sum();
+            if (views == c.flushedViews && inquiries == c.flushedInquiries) continue;
+
+            c.pendingViews = views;
+            c.pendingInquiries = inquiries;
+            c.pendingToken = next.token;
+            next.ids.add(e.getKey());
+        }
+
+        if (!next.ids.isEmpty()) execute(next);
+    }
+
+    // @return false if the outcome is unknown, flush is then kept for the next run
+    private boolean execute(Flush flush) {
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PG.class);
+        for (String id : flush.ids) {
+            Counters c = counters.get(id);
+            ops.updateOne(
+                    new Query(where("_id").is(id).and("counterFlushes").ne(flush.token)),
+                    new Update()
+                            .inc("views", c.pendingViews - c.flushedViews)
+                            .inc("inquiries", c.pendingInquiries - c.flushedInquiries)
+                            .push("counterFlushes").slice(-FLUSH_TOKENS).each(flush.token)
+            );
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        try {
+            ops.execute();
+        } catch (BulkOperationException ex) {
+            // rejected updates were not applied, their deltas go out with the next token
+            ex.getErrors().forEach(err -> failed.add(err.getIndex()));
+            System.err.println("PG counter flush: " + failed.size() + " updates failed");
+        } catch (RuntimeException ex) {
+            // may or may not have been applied, the token makes sending it again safe
+            unconfirmed = flush;
+            System.err.println("PG counter flush failed, retrying it next time: " + ex.getMessage());
+            return false;
+        }
+
+        for (int i = 0; i < flush.ids.size(); i++) {
+            Counters c = counters.get(flush.ids.get(i));
+            if (!failed.contains(i)) {
+                c.flushedViews = c.pendingViews;
+                c.flushedInquiries = c.pendingInquiries;
+            }
+            c.pendingToken = null;
+        }
+        unconfirmed = null;
+        return true;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static int orZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static final class Counters {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder inquiries = new LongAdder();
+
+        // totals already in Mongo, written by flush only
+        private volatile long flushedViews;
+        private volatile long flushedInquiries;
+
+        // totals of the bulk in flight, if any
+        private volatile long pendingViews;
+        private volatile long pendingInquiries;
+        private volatile String pendingToken;
+    }
+
+    private static final class Flush {
+        private final String token;
+        private final List<String> ids = new ArrayList<>();
+
+        Flush(String token) {
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.modules.pg.dto.PGQuery;
+import com.zipnivasa.backend.modules.pg.dto.PGSummary;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in a listing: the sort value and id of the last item of
+ * a page. Opaque to clients, base64url("<value>:<id>"); the value is the
+ * rent, or createdAt in epoch millis for NEWEST. Mongo and the in-memory
+ * index read each other's cursors.
+ */
+@Getter
+@RequiredArgsConstructor
+class PGCursor {
+
+    private final double value;
+    private final String id;
+
+    static String after(PGSummary last, PGQuery.Sort sort) {
+        String value = sort == PGQuery.Sort.NEWEST
+                ? String.valueOf(last.getCreatedAt() == null ? 0 : last.getCreatedAt().toEpochMilli())
+                : String.valueOf(last.getMonthlyRent());
+
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((value + ":" + last.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return null for no cursor */
+    static PGCursor parse(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = decoded.indexOf(':');
+            return new PGCursor(Double.parseDouble(decoded.substring(0, sep)), decoded.substring(sep + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // NumberFormatException is an IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.modules.pg.model.PG;
+import com.zipnivasa.backend.modules.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * One-time upgrades for PGs created before these fields existed:
+ *  - sets PG.locationKey from location
+ *  - embeds PG.ownerSnapshot from the owner's user
+ */
+@Component
+@RequiredArgsConstructor
+public class PGIndexBackfill implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+    private final PGService pgService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfillLocationKeys();
+        backfillOwnerSnapshots();
+    }
+
+    // PG.locationKeyOf in Java: Mongo's $toLower only lowercases ASCII
+    private void backfillLocationKeys() {
+        Query missing = new Query(where("locationKey").exists(false).and("location").type(2)); // 2 = string
+        missing.fields().include("location");
+
+        AtomicLong processed = new AtomicLong();
+        List<PG> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (Stream<PG> pgs = mongoTemplate.stream(missing, PG.class)) {
+            pgs.forEach(pg -> {
+                batch.add(pg);
+                if (batch.size() == BATCH_SIZE) {
+                    processed.addAndGet(writeKeys(batch));
+                }
+            });
+        }
+        processed.addAndGet(writeKeys(batch));
+
+        if (processed.get() > 0) {
+            System.out.println("Location keys set on " + processed.get() + " PGs");
+        }
+    }
+
+    private int writeKeys(List<PG> batch) {
+        if (batch.isEmpty()) return 0;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PG.class);
+        for (PG pg : batch) {
+            ops.updateOne(
+                    new Query(where("_id").is(pg.getId())),
+                    new Update().set("locationKey", PG.locationKeyOf(pg.getLocation()))
+            );
+        }
+        ops.execute();
+
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+
+    // one update per owner
+    private void backfillOwnerSnapshots() {
+        Query missing = new Query(where("ownerSnapshot").exists(false).and("owner").exists(true));
+        List<String> owners = mongoTemplate.findDistinct(missing, "owner", PG.class, String.class);
+
+        long updated = 0;
+        for (String owner : owners) {
+            updated += userRepository.findById(owner)
+                    .map(user -> mongoTemplate.updateMulti(
+                            new Query(where("owner").is(owner).and("ownerSnapshot").exists(false)),
+                            new Update().set("ownerSnapshot", pgService.ownerSnapshotOf(user)),
+                            PG.class).getModifiedCount())
+                    .orElse(0L);
+        }
+
+        if (updated > 0) {
+            System.out.println("Owner snapshots set on " + updated + " PGs");
+        }
+    }
+}
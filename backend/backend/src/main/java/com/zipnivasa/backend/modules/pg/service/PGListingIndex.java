@@ -0,0 +1,460 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.modules.pg.dto.PGPage;
+import com.zipnivasa.backend.modules.pg.dto.PGQuery;
+import com.zipnivasa.backend.modules.pg.dto.PGSummary;
+import com.zipnivasa.backend.modules.pg.model.PG;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * In-process listing index over all PGs, answers /api/pgs/search
+ * without a Mongo round trip.
+ *
+ * Every PG gets a dense ordinal. Filters are bitmap postings per
+ * amenity, occupancyType, propertyType and locationKey (plus available),
+ * ANDed together; rent and createdAt are primitive arrays with ordinals
+ * sorted by them, so a range or a keyset cursor is a binary search.
+ * Hits are hydrated from the PGSummary kept per ordinal.
+ *
+ * Writers work under the monitor and publish an immutable Snapshot, so
+ * searches never block. Writes on this node go through upsert, other
+ * nodes' writes arrive with refresh (PG.updatedAt). PGs are never deleted.
+ * A publish copies the whole index, so upserts only mark it dirty and
+ * publishPending publishes at most once per pg.index.publish-ms: a save
+ * shows up in search within that delay, not on the next request.
+ *
+ * Staleness: refresh only sees writes that bump updatedAt (save and
+ * GeoBackfill do). The updateMulti writers that don't touch fields held
+ * here: PGService.refreshOwner and the owner snapshot backfill set
+ * ownerSnapshot, PGCounterService views and inquiries. The locationKey
+ * backfill writes what put() derives from location anyway, and runs
+ * before load(). A new bulk update of a listing field must set updatedAt,
+ * or other nodes serve the old value until they restart.
+ */
+@Component
+public class PGListingIndex {
+
+    // a batch larger than this re-sorts instead of inserting one by one
+    private static final int MIN_REBUILD_BATCH = 64;
+
+    // what a PGSummary and the filters read; images are sliced to the cover
+    static final String[] LISTING_FIELDS = {"title", "propertyType", "location", "locationKey", "position",
+            "monthlyRent", "deposit", "occupancyType", "amenities", "beds", "available", "createdAt", "updatedAt"};
+
+    // refresh re-reads this much before the newest updatedAt seen (clock skew between nodes)
+    private static final long REFRESH_OVERLAP_MS = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    // null until load() finished
+    private volatile Snapshot snapshot;
+
+    // changes not yet published, guarded by this
+    private boolean dirty;
+
+    // ------------------- writer state, guarded by this -----------------------
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ids = new String[0];
+    private double[] rents = new double[0];        // NaN = no rent
+    private double[] deposits = new double[0];     // NaN = no deposit
+    private double[] created = new double[0];      // createdAt epoch millis, 0 = unknown
+    private long[] versions = new long[0];         // updatedAt epoch millis
+    private PGSummary[] summaries = new PGSummary[0];
+    private int size;
+
+    private final BitSet available = new BitSet();
+    private final Map<String, BitSet> byAmenity = new HashMap<>();
+    private final Map<String, BitSet> byOccupancy = new HashMap<>();
+    private final Map<String, BitSet> byPropertyType = new HashMap<>();
+    private final Map<String, BitSet> byLocation = new HashMap<>();
+
+    private int[] byRent = new int[0];       // ordinals with a rent, by (rent, id)
+    private int[] byCreated = new int[0];    // all ordinals, by (createdAt, id)
+
+    private long loadedUpTo;
+
+    public PGListingIndex(MongoTemplate mongoTemplate,
+                          @Value("${pg.index.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    PGPage search(PGQuery q, PGCursor cursor) {
+        return snapshot.search(q, cursor);
+    }
+
+    // ------------------- WRITE -----------------------
+    // after PGIndexBackfill (an ApplicationRunner), so locationKey is set
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) return;
+
+        long start = System.currentTimeMillis();
+        List<PG> all = mongoTemplate.find(listingQuery(new Query()), PG.class);
+
+        loadAll(all);
+        System.out.println("PG listing index: " + all.size() + " PGs loaded in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    synchronized void loadAll(List<PG> all) {
+        for (PG pg : all) {
+            put(pg);
+        }
+        rebuildOrders();
+        publish();
+    }
+
+    // a PG saved on this node, searchable after the next publishPending
+    public void upsert(PG pg) {
+        // before load() the PG is picked up by refresh
+        if (snapshot == null) return;
+
+        synchronized (this) {
+            reindex(List.of(pg));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${pg.index.refresh-ms:30000}",
+            initialDelayString = "${pg.index.refresh-ms:30000}")
+    public void refresh() {
+        if (snapshot == null) return;
+
+        Instant since;
+        synchronized (this) {
+            since = Instant.ofEpochMilli(loadedUpTo - REFRESH_OVERLAP_MS);
+        }
+
+        List<PG> changed = mongoTemplate.find(listingQuery(new Query(where("updatedAt").gt(since))), PG.class);
+        if (changed.isEmpty()) return;
+
+        synchronized (this) {
+            reindex(changed);
+        }
+        publishPending();
+    }
+
+    @Scheduled(fixedDelayString = "${pg.index.publish-ms:250}")
+    public synchronized void publishPending() {
+        if (dirty) publish();
+    }
+
+    // only the fields listings and filters need, first image as the cover
+    private Query listingQuery(Query query) {
+        query.fields().include(LISTING_FIELDS).slice("images", 1);
+        return query;
+    }
+
+    private void reindex(List<PG> pgs) {
+        List<PG> changed = new ArrayList<>(pgs.size());
+        for (PG pg : pgs) {
+            Integer ord = ordinals.get(pg.getId());
+            if (ord == null || millis(pg.getUpdatedAt()) > versions[ord]) {
+                changed.add(pg);
+            }
+        }
+        if (changed.isEmpty()) return;
+
+        boolean rebuild = changed.size() > Math.max(MIN_REBUILD_BATCH, size / 16);
+
+        for (PG pg : changed) {
+            Integer existing = ordinals.get(pg.getId());
+            if (existing != null && !rebuild) {
+                byRent = remove(byRent, existing);
+                byCreated = remove(byCreated, existing);
+            }
+
+            int ord = put(pg);
+
+            if (!rebuild) {
+                if (!Double.isNaN(rents[ord])) byRent = insert(byRent, ord, rents);
+                byCreated = insert(byCreated, ord, created);
+            }
+        }
+
+        if (rebuild) rebuildOrders();
+        dirty = true;
+    }
+
+    // @return the PG's ordinal; the sort orders are left to the caller
+    private int put(PG pg) {
+        Integer existing = ordinals.get(pg.getId());
+        int ord;
+
+        if (existing != null) {
+            ord = existing;
+            clear(byAmenity, ord);
+            clear(byOccupancy, ord);
+            clear(byPropertyType, ord);
+            clear(byLocation, ord);
+        } else {
+            ord = size++;
+            ordinals.put(pg.getId(), ord);
+            if (ord == ids.length) grow();
+        }
+
+        ids[ord] = pg.getId();
+        rents[ord] = pg.getMonthlyRent() != null ? pg.getMonthlyRent() : Double.NaN;
+        deposits[ord] = pg.getDeposit() != null ? pg.getDeposit() : Double.NaN;
+        created[ord] = millis(pg.getCreatedAt());
+        versions[ord] = millis(pg.getUpdatedAt());
+        summaries[ord] = PGSummary.of(pg);
+
+        available.set(ord, Boolean.TRUE.equals(pg.getAvailable()));
+        if (pg.getAmenities() != null) {
+            for (String amenity : pg.getAmenities()) posting(byAmenity, amenity).set(ord);
+        }
+        if (pg.getOccupancyType() != null) posting(byOccupancy, pg.getOccupancyType()).set(ord);
+        if (pg.getPropertyType() != null) posting(byPropertyType, pg.getPropertyType()).set(ord);
+
+        String locationKey = pg.getLocationKey() != null ? pg.getLocationKey() : PG.locationKeyOf(pg.getLocation());
+        if (locationKey != null) posting(byLocation, locationKey).set(ord);
+
+        loadedUpTo = Math.max(loadedUpTo, versions[ord]);
+        return ord;
+    }
+
+    private void grow() {
+        int capacity = Math.max(1024, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        rents = Arrays.copyOf(rents, capacity);
+        deposits = Arrays.copyOf(deposits, capacity);
+        created = Arrays.copyOf(created, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        summaries = Arrays.copyOf(summaries, capacity);
+    }
+
+    private void rebuildOrders() {
+        byRent = sorted(IntStream.range(0, size).filter(o -> !Double.isNaN(rents[o])), rents);
+        byCreated = sorted(IntStream.range(0, size), created);
+    }
+
+    private int[] sorted(IntStream ords, double[] keys) {
+        return ords.boxed()
+                .sorted((a, b) -> compare(keys, a, b))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private int compare(double[] keys, int a, int b) {
+        int c = Double.compare(keys[a], keys[b]);
+        return c != 0 ? c : ids[a].compareTo(ids[b]);
+    }
+
+    private int[] insert(int[] order, int ord, double[] keys) {
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(keys, order[mid], ord) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+
+        int[] result = new int[order.length + 1];
+        System.arraycopy(order, 0, result, 0, lo);
+        result[lo] = ord;
+        System.arraycopy(order, lo, result, lo + 1, order.length - lo);
+        return result;
+    }
+
+    private int[] remove(int[] order, int ord) {
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] == ord) {
+                int[] result = new int[order.length - 1];
+                System.arraycopy(order, 0, result, 0, i);
+                System.arraycopy(order, i + 1, result, i, order.length - i - 1);
+                return result;
+            }
+        }
+        return order;
+    }
+
+    private void publish() {
+        dirty = false;
+        snapshot = new Snapshot(
+                Arrays.copyOf(ids, size),
+                Arrays.copyOf(rents, size),
+                Arrays.copyOf(deposits, size),
+                Arrays.copyOf(created, size),
+                Arrays.copyOf(summaries, size),
+                (BitSet) available.clone(),
+                copy(byAmenity), copy(byOccupancy), copy(byPropertyType), copy(byLocation),
+                byRent, byCreated
+        );
+    }
+
+    private static BitSet posting(Map<String, BitSet> postings, String key) {
+        return postings.computeIfAbsent(key, k -> new BitSet());
+    }
+
+    private static void clear(Map<String, BitSet> postings, int ord) {
+        for (BitSet posting : postings.values()) posting.clear(ord);
+    }
+
+    private static Map<String, BitSet> copy(Map<String, BitSet> postings) {
+        Map<String, BitSet> copy = new HashMap<>(postings.size() * 2);
+        postings.forEach((k, v) -> copy.put(k, (BitSet) v.clone()));
+        return copy;
+    }
+
+    private static long millis(Instant instant) {
+        return instant == null ? 0 : instant.toEpochMilli();
+    }
+
+    // ------------------- READ -----------------------
+    /** The index as of one publish. Never modified; the order arrays are replaced, not changed, by writers. */
+    private static final class Snapshot {
+        private final String[] ids;
+        private final double[] rents;
+        private final double[] deposits;
+        private final double[] created;
+        private final PGSummary[] summaries;
+        private final BitSet available;
+        private final Map<String, BitSet> byAmenity;
+        private final Map<String, BitSet> byOccupancy;
+        private final Map<String, BitSet> byPropertyType;
+        private final Map<String, BitSet> byLocation;
+        private final int[] byRent;
+        private final int[] byCreated;
+
+        Snapshot(String[] ids, double[] rents, double[] deposits, double[] created, PGSummary[] summaries,
+                 BitSet available, Map<String, BitSet> byAmenity, Map<String, BitSet> byOccupancy,
+                 Map<String, BitSet> byPropertyType, Map<String, BitSet> byLocation,
+                 int[] byRent, int[] byCreated) {
+            this.ids = ids;
+            this.rents = rents;
+            this.deposits = deposits;
+            this.created = created;
+            this.summaries = summaries;
+            this.available = available;
+            this.byAmenity = byAmenity;
+            this.byOccupancy = byOccupancy;
+            this.byPropertyType = byPropertyType;
+            this.byLocation = byLocation;
+            this.byRent = byRent;
+            this.byCreated = byCreated;
+        }
+
+        // same filters, order and cursors as the Mongo query in PGQueryService
+        PGPage search(PGQuery q, PGCursor cursor) {
+            int pageSize = Math.min(Math.max(q.getLimit(), 1), PGQueryService.MAX_PAGE_SIZE);
+            PGQuery.Sort sort = q.getSort() == null ? PGQuery.Sort.NEWEST : q.getSort();
+
+            BitSet match = filter(q);
+
+            boolean byRentSort = sort != PGQuery.Sort.NEWEST;
+            boolean rentFilter = byRentSort || q.getMinRent() != null || q.getMaxRent() != null;
+            double minRent = q.getMinRent() != null ? q.getMinRent() : 0d;
+            double maxRent = q.getMaxRent() != null ? q.getMaxRent() : Double.POSITIVE_INFINITY;
+            double maxDeposit = q.getMaxDeposit() != null ? q.getMaxDeposit() : Double.NaN;
+
+            int[] order = byRentSort ? byRent : byCreated;
+            double[] keys = byRentSort ? rents : created;
+            boolean ascending = sort == PGQuery.Sort.RENT_ASC;
+
+            // [from, to) of order is in range
+            int from = 0;
+            int to = order.length;
+            if (byRentSort) {
+                from = seek(order, keys, minRent, null);
+                to = seek(order, keys, Math.nextUp(maxRent), null);
+            }
+            if (cursor != null) {
+                int past = seek(order, keys, cursor.getValue(), cursor.getId());
+                if (ascending) {
+                    from = Math.max(from, past);
+                } else {
+                    // drop the cursor's own item too
+                    if (past > 0 && ids[order[past - 1]].equals(cursor.getId())) past--;
+                    to = Math.min(to, past);
+                }
+            }
+
+            List<PGSummary> items = new ArrayList<>(pageSize + 1);
+            for (int n = 0; n < to - from && items.size() <= pageSize; n++) {
+                int ord = order[ascending ? from + n : to - 1 - n];
+
+                if (!match.get(ord)) continue;
+                if (rentFilter && !(rents[ord] >= minRent && rents[ord] <= maxRent)) continue;
+                if (!Double.isNaN(maxDeposit) && !(deposits[ord] <= maxDeposit)) continue;
+
+                items.add(summaries[ord]);
+            }
+
+            boolean hasMore = items.size() > pageSize;
+            if (hasMore) {
+                items = items.subList(0, pageSize);
+            }
+
+            return PGPage.builder()
+                    .items(new ArrayList<>(items))
+                    .nextCursor(hasMore ? PGCursor.after(items.get(items.size() - 1), sort) : null)
+                    .hasMore(hasMore)
+                    .build();
+        }
+
+        private BitSet filter(PGQuery q) {
+            BitSet match;
+            if (Boolean.TRUE.equals(q.getAvailable())) {
+                match = (BitSet) available.clone();
+            } else {
+                match = new BitSet(ids.length);
+                match.set(0, ids.length);
+                if (Boolean.FALSE.equals(q.getAvailable())) match.andNot(available);
+            }
+
+            if (q.getLocation() != null && !q.getLocation().isBlank()) {
+                and(match, byLocation, PG.locationKeyOf(q.getLocation()));
+            }
+            if (q.getOccupancyType() != null && !q.getOccupancyType().isBlank()) {
+                and(match, byOccupancy, q.getOccupancyType());
+            }
+            if (q.getPropertyType() != null && !q.getPropertyType().isBlank()) {
+                and(match, byPropertyType, q.getPropertyType());
+            }
+            if (q.getAmenities() != null) {
+                for (String amenity : q.getAmenities()) and(match, byAmenity, amenity);
+            }
+            return match;
+        }
+
+        private static void and(BitSet match, Map<String, BitSet> postings, String key) {
+            BitSet posting = postings.get(key);
+            if (posting == null) match.clear();
+            else match.and(posting);
+        }
+
+        /**
+         * First position in order whose (key, id) is greater than (value, id).
+         * With id == null: the first position whose key is >= value.
+         */
+        private int seek(int[] order, double[] keys, double value, String id) {
+            int lo = 0, hi = order.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = Double.compare(keys[order[mid]], value);
+                if (c == 0 && id != null) c = ids[order[mid]].compareTo(id);
+
+                if (c > 0 || (c == 0 && id == null)) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo;
+        }
+    }
+}
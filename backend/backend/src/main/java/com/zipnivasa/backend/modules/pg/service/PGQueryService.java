@@ -0,0 +1,153 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.common.geo.GeoPoints;
+import com.zipnivasa.backend.modules.pg.dto.NearbyPG;
+import com.zipnivasa.backend.modules.pg.dto.PGPage;
+import com.zipnivasa.backend.modules.pg.dto.PGQuery;
+import com.zipnivasa.backend.modules.pg.dto.PGSummary;
+import com.zipnivasa.backend.modules.pg.model.PG;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Filtered PG listings with keyset pagination.
+ *
+ * Queries are shaped for the compound indexes on PG: equality on
+ * locationKey / available, then the sort key and _id. Rent, deposit,
+ * type and amenity filters are applied while walking that index, so a
+ * page costs about the same however many listings exist.
+ *
+ * Served from PGListingIndex once it is loaded, Mongo is the fallback
+ * while it is not (startup, pg.index.enabled=false).
+ */
+@Service
+@RequiredArgsConstructor
+public class PGQueryService {
+
+    static final int MAX_PAGE_SIZE = 50;
+
+    private final MongoTemplate mongoTemplate;
+    private final PGListingIndex listingIndex;
+
+    public PGPage search(PGQuery q) {
+        PGCursor cursor = PGCursor.parse(q.getCursor());
+        if (listingIndex.isReady()) {
+            return listingIndex.search(q, cursor);
+        }
+
+        int pageSize = Math.min(Math.max(q.getLimit(), 1), MAX_PAGE_SIZE);
+        PGQuery.Sort sort = q.getSort() == null ? PGQuery.Sort.NEWEST : q.getSort();
+
+        String sortField = sort == PGQuery.Sort.NEWEST ? "createdAt" : "monthlyRent";
+        Sort.Direction direction = sort == PGQuery.Sort.RENT_ASC ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        // a rent sort leaves out listings without a rent, the cursor could not point past them
+        List<Criteria> filters = filters(q, sort != PGQuery.Sort.NEWEST);
+        if (cursor != null) {
+            filters.add(after(cursor, sort, sortField, direction));
+        }
+
+        Query query = new Query(new Criteria().andOperator(filters))
+                .with(Sort.by(direction, sortField).and(Sort.by(direction, "id")))
+                .limit(pageSize + 1);
+        query.fields()
+                .include("title", "propertyType", "location", "position", "monthlyRent", "deposit",
+                        "occupancyType", "amenities", "beds", "available", "createdAt")
+                .slice("images", 1);
+
+        List<PG> found = mongoTemplate.find(query, PG.class);
+
+        boolean hasMore = found.size() > pageSize;
+        if (hasMore) {
+            found = found.subList(0, pageSize);
+        }
+
+        List<PGSummary> items = found.stream().map(PGSummary::of).toList();
+        String nextCursor = hasMore ? PGCursor.after(items.get(items.size() - 1), sort) : null;
+
+        return PGPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * PGs within radiusKm of a point, nearest first, with the same filters
+     * as search (cursor and sort are ignored). Only PGs with a position.
+     */
+    public List<NearbyPG> nearby(double latitude, double longitude, double radiusKm, PGQuery q) {
+        int limit = Math.min(Math.max(q.getLimit(), 1), MAX_PAGE_SIZE);
+
+        NearQuery near = NearQuery.near(GeoPoints.of(latitude, longitude), Metrics.KILOMETERS)
+                .maxDistance(new Distance(GeoPoints.radiusKm(radiusKm), Metrics.KILOMETERS))
+                .query(new Query(new Criteria().andOperator(filters(q, false))))
+                .limit(limit);
+
+        List<NearbyPG> result = new ArrayList<>(limit);
+        for (GeoResult<PG> hit : GeoPoints.near(mongoTemplate, near, PG.class, PGListingIndex.LISTING_FIELDS)) {
+            result.add(new NearbyPG(PGSummary.of(hit.getContent()), hit.getDistance().getValue()));
+        }
+        return result;
+    }
+
+    private List<Criteria> filters(PGQuery q, boolean rentRequired) {
+        List<Criteria> filters = new ArrayList<>();
+
+        if (q.getLocation() != null && !q.getLocation().isBlank()) {
+            filters.add(where("locationKey").is(PG.locationKeyOf(q.getLocation())));
+        }
+        // an $in over both values keeps the available_* indexes usable without the filter
+        filters.add(q.getAvailable() != null
+                ? where("available").is(q.getAvailable())
+                : where("available").in(true, false));
+
+        if (q.getMinRent() != null || q.getMaxRent() != null || rentRequired) {
+            Criteria rent = where("monthlyRent").gte(q.getMinRent() != null ? q.getMinRent() : 0d);
+            if (q.getMaxRent() != null) rent.lte(q.getMaxRent());
+            filters.add(rent);
+        }
+        if (q.getMaxDeposit() != null) {
+            filters.add(where("deposit").lte(q.getMaxDeposit()));
+        }
+        if (q.getOccupancyType() != null && !q.getOccupancyType().isBlank()) {
+            filters.add(where("occupancyType").is(q.getOccupancyType()));
+        }
+        if (q.getPropertyType() != null && !q.getPropertyType().isBlank()) {
+            filters.add(where("propertyType").is(q.getPropertyType()));
+        }
+        if (q.getAmenities() != null && !q.getAmenities().isEmpty()) {
+            filters.add(where("amenities").all(q.getAmenities()));
+        }
+        return filters;
+    }
+
+    // strictly past the cursor in sort order, _id breaks ties
+    private Criteria after(PGCursor cursor, PGQuery.Sort sort, String sortField, Sort.Direction direction) {
+        Object bound = sort == PGQuery.Sort.NEWEST
+                ? Instant.ofEpochMilli((long) cursor.getValue())
+                : (Object) cursor.getValue();
+
+        boolean asc = direction == Sort.Direction.ASC;
+        Criteria beyond = asc ? where(sortField).gt(bound) : where(sortField).lt(bound);
+        Criteria tie = asc
+                ? where(sortField).is(bound).and("id").gt(cursor.getId())
+                : where(sortField).is(bound).and("id").lt(cursor.getId());
+
+        return new Criteria().orOperator(beyond, tie);
+    }
+}
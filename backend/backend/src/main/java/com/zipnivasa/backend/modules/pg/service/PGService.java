@@ -1,30 +1,45 @@
 package com.zipnivasa.backend.modules.pg.service;
 
+import com.zipnivasa.backend.common.geo.GeoPoints;
 import com.zipnivasa.backend.modules.pg.dto.PGRequest;
 import com.zipnivasa.backend.modules.pg.model.PG;
 import com.zipnivasa.backend.modules.pg.repository.PGRepository;
+import com.zipnivasa.backend.modules.user.model.User;
+import com.zipnivasa.backend.modules.user.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
 @Service
 @RequiredArgsConstructor
 public class PGService {
 
     private final PGRepository pgRepository;
+    private final PGListingIndex listingIndex;
+    private final PGCounterService counterService;
+    private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
 
     public PG createPG(PGRequest req) {
         PG pg = PG.builder()
                 .title(req.getTitle())
                 .propertyType(req.getPropertyType())
                 .location(req.getLocation())
+                .locationKey(PG.locationKeyOf(req.getLocation()))
+                .position(GeoPoints.of(req.getLatitude(), req.getLongitude()))
                 .address(req.getAddress())
                 .monthlyRent(req.getMonthlyRent())
                 .deposit(req.getDeposit())
                 .occupancyType(req.getOccupancyType())
                 .description(req.getDescription())
                 .owner(req.getOwnerId())
+                .ownerSnapshot(userRepository.findById(req.getOwnerId()).map(this::ownerSnapshotOf).orElse(null))
                 .amenities(req.getAmenities())
                 .images(req.getImagePaths())
                 .beds(1)
@@ -33,19 +48,63 @@ public class PGService {
                 .inquiries(0)
                 .build();
 
-        return pgRepository.save(pg);
+        PG saved = pgRepository.save(pg);
+        listingIndex.upsert(saved);
+        return saved;
     }
 
     public List<PG> getAllPGs() {
-        return pgRepository.findAllByOrderByCreatedAtDesc();
+        List<PG> pgs = pgRepository.findAllByOrderByCreatedAtDesc();
+        pgs.forEach(counterService::merge);
+        return pgs;
     }
 
     public PG getPGById(String id) {
         return pgRepository.findById(id)
+                .map(counterService::merge)
                 .orElse(null);
     }
 
     public List<PG> getPGsByOwner(String ownerId) {
-        return pgRepository.findByOwnerOrderByCreatedAtDesc(ownerId);
+        List<PG> pgs = pgRepository.findByOwnerOrderByCreatedAtDesc(ownerId);
+        pgs.forEach(counterService::merge);
+        return pgs;
+    }
+
+    /**
+     * Owner details for the detail page: the embedded snapshot, or for a PG
+     * written before snapshots (and not yet backfilled) a lookup that is
+     * then stored on it.
+     */
+    public PG.OwnerSnapshot getOwnerDetails(PG pg) {
+        if (pg.getOwnerSnapshot() != null) return pg.getOwnerSnapshot();
+
+        PG.OwnerSnapshot snapshot = userRepository.findById(pg.getOwner()).map(this::ownerSnapshotOf).orElse(null);
+        if (snapshot != null) {
+            mongoTemplate.updateFirst(new Query(where("_id").is(pg.getId())),
+                    new Update().set("ownerSnapshot", snapshot), PG.class);
+        }
+        return snapshot;
+    }
+
+    // called from ProfileService when name / phone changes
+    public void refreshOwner(User user) {
+        mongoTemplate.updateMulti(new Query(where("owner").is(user.getId())),
+                new Update().set("ownerSnapshot", ownerSnapshotOf(user)), PG.class);
+    }
+
+    public PG.OwnerSnapshot ownerSnapshotOf(User user) {
+        return new PG.OwnerSnapshot(user.getId(), user.getName(), user.getEmail(), user.getPhone(), user.getRole());
+    }
+
+    // buffered, see PGCounterService
+    public void recordView(String id) {
+        counterService.recordView(id);
+    }
+
+    public boolean recordInquiry(String id) {
+        if (!pgRepository.existsById(id)) return false;
+        counterService.recordInquiry(id);
+        return true;
     }
 }
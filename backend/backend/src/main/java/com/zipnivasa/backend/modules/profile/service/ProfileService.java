@@ -1,5 +1,7 @@
 package com.zipnivasa.backend.modules.profile.service;
 
+import com.zipnivasa.backend.modules.chat.service.ConversationIndexService;
+import com.zipnivasa.backend.modules.pg.service.PGService;
 import com.zipnivasa.backend.modules.profile.dto.ProfileUpdateRequest;
 import com.zipnivasa.backend.modules.user.model.MessOwner;
 import com.zipnivasa.backend.modules.user.model.PGOwner;
@@ -24,6 +26,8 @@ public class ProfileService {
     private final TenantRepository tenantRepository;
     private final PGOwnerRepository pgOwnerRepository;
     private final MessOwnerRepository messOwnerRepository;
+    private final ConversationIndexService conversationIndexService;
+    private final PGService pgService;
 
 
     public Optional<User> getUser(String userId) {
@@ -45,6 +49,8 @@ public class ProfileService {
             if (req.getName() != null) user.setName(req.getName());
             if (req.getPhone() != null) user.setPhone(req.getPhone());
             userRepository.save(user);
+            conversationIndexService.refreshPartner(user);
+            pgService.refreshOwner(user);
         });
 
         Map<String, Object> roleData = req.getRoleData();
@@ -0,0 +1,346 @@
+package com.zipnivasa.backend.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zipnivasa.backend.config.JwtUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chat load harness: boots the application on a random port, connects
+ * load.users in-process STOMP clients and drives send / typing / presence
+ * traffic for load.duration-seconds, then prints throughput and
+ * end-to-end delivery latency (sender's send → receiver's frame).
+ *
+ * Not part of the normal build, run it with
+ *   ./mvnw -Pload test -Dload.users=2000 -Dload.duration-seconds=60
+ *
+ * Needs a local Mongo (load.mongo-uri, default a separate zipnivasa_load
+ * database). Other knobs: load.send-rate (messages per user per second),
+ * load.typing-ratio (typing frames per message), load.churn-per-second
+ * (reconnects across the fleet), load.transport (sockjs → /ws,
+ * native → /ws-native), load.driver-threads.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatLoadHarnessTest {
+
+	private static final int USERS = Integer.getInteger("load.users", 2000);
+	private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 60);
+	private static final double SEND_RATE = Double.parseDouble(System.getProperty("load.send-rate", "0.5"));
+	private static final double TYPING_RATIO = Double.parseDouble(System.getProperty("load.typing-ratio", "1.0"));
+	private static final double CHURN_PER_SECOND = Double.parseDouble(System.getProperty("load.churn-per-second", "5"));
+	private static final String TRANSPORT = System.getProperty("load.transport", "sockjs");
+	private static final int DRIVER_THREADS = Integer.getInteger("load.driver-threads", 8);
+
+	private static final int MAX_PENDING_CONNECTS = 200;
+	private static final long TICK_MS = 100;
+	private static final String MARKER = "load:";
+
+	private final ObjectMapper json = new ObjectMapper();
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong typingSent = new AtomicLong();
+	private final AtomicLong typingReceived = new AtomicLong();
+	private final AtomicLong presenceDeltas = new AtomicLong();
+	private final AtomicLong reconnects = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+
+	private volatile boolean measuring;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry registry) {
+		registry.add("spring.data.mongodb.uri",
+				() -> System.getProperty("load.mongo-uri", "mongodb://localhost:27017/zipnivasa_load"));
+		registry.add("chat.journal.enabled", () -> "true");
+		registry.add("chat.journal.dir", ChatLoadHarnessTest::tempJournalDir);
+		registry.add("chat.archive.enabled", () -> "false");
+	}
+
+	// fail on a bad knob before booting the application, not halfway through the run
+	@BeforeAll
+	static void validateConfig() {
+		require(USERS >= 2, "load.users must be at least 2, every user needs a partner");
+		require(DURATION_SECONDS > 0, "load.duration-seconds must be positive");
+		require(SEND_RATE >= 0, "load.send-rate must not be negative");
+		require(TYPING_RATIO >= 0, "load.typing-ratio must not be negative");
+		require(CHURN_PER_SECOND >= 0, "load.churn-per-second must not be negative");
+		require(DRIVER_THREADS > 0, "load.driver-threads must be positive");
+		require("sockjs".equalsIgnoreCase(TRANSPORT) || "native".equalsIgnoreCase(TRANSPORT),
+				"load.transport must be sockjs or native");
+	}
+
+	private static void require(boolean condition, String message) {
+		if (!condition) throw new IllegalArgumentException(message);
+	}
+
+	@Test
+	void sustainedChatTraffic() throws Exception {
+		WebSocketStompClient stompClient = new WebSocketStompClient(transportClient());
+		stompClient.setInboundMessageSizeLimit(64 * 1024);
+
+		AtomicReferenceArray<StompSession> sessions = new AtomicReferenceArray<>(USERS);
+
+		// ------------------- CONNECT -----------------------
+		long connectStart = System.nanoTime();
+		Semaphore inFlight = new Semaphore(MAX_PENDING_CONNECTS);
+		CountDownLatch connected = new CountDownLatch(USERS);
+
+		for (int i = 0; i < USERS; i++) {
+			int user = i;
+			inFlight.acquire();
+			connect(stompClient, user).whenComplete((session, e) -> {
+				inFlight.release();
+				if (e != null) errors.incrementAndGet();
+				else sessions.set(user, session);
+				connected.countDown();
+			});
+		}
+		connected.await(5, TimeUnit.MINUTES);
+
+		long connectMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+		int live = 0;
+		for (int i = 0; i < USERS; i++) {
+			if (sessions.get(i) != null) live++;
+		}
+		System.out.println("Connected " + live + "/" + USERS + " sessions in " + connectMs + " ms over " + TRANSPORT);
+
+		// ------------------- DRIVE -----------------------
+		ScheduledExecutorService drivers = Executors.newScheduledThreadPool(DRIVER_THREADS + 1);
+		double sendChancePerTick = SEND_RATE * TICK_MS / 1000.0;
+
+		measuring = true;
+		long runStart = System.nanoTime();
+
+		for (int t = 0; t < DRIVER_THREADS; t++) {
+			int slice = t;
+			drivers.scheduleAtFixedRate(() -> {
+				ThreadLocalRandom rnd = ThreadLocalRandom.current();
+				for (int user = slice; user < USERS; user += DRIVER_THREADS) {
+					StompSession session = sessions.get(user);
+					if (session == null || !session.isConnected()) continue;
+					if (rnd.nextDouble() >= sendChancePerTick) continue;
+
+					String partner = userId(partnerOf(user, rnd));
+					try {
+						if (rnd.nextDouble() < TYPING_RATIO) {
+							typing(session, userId(user), partner);
+						}
+						send(session, userId(user), partner);
+					} catch (RuntimeException e) {
+						errors.incrementAndGet();
+					}
+				}
+			}, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+		}
+
+		if (CHURN_PER_SECOND > 0) {
+			long periodMicros = (long) (1_000_000 / CHURN_PER_SECOND);
+			drivers.scheduleAtFixedRate(() -> {
+				int user = ThreadLocalRandom.current().nextInt(USERS);
+				StompSession old = sessions.getAndSet(user, null);
+				if (old != null && old.isConnected()) old.disconnect();
+
+				connect(stompClient, user).whenComplete((session, e) -> {
+					if (e != null) errors.incrementAndGet();
+					else {
+						sessions.set(user, session);
+						reconnects.incrementAndGet();
+					}
+				});
+			}, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+		}
+
+		Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SECONDS));
+		drivers.shutdownNow();
+		long runMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStart);
+
+		// let in-flight frames arrive
+		Thread.sleep(2000);
+		measuring = false;
+
+		report(runMs);
+
+		for (int i = 0; i < USERS; i++) {
+			StompSession session = sessions.get(i);
+			if (session != null && session.isConnected()) session.disconnect();
+		}
+		stompClient.stop();
+
+		assertTrue(delivered.get() > 0, "no chat message was delivered");
+	}
+
+	// ------------------- CLIENT -----------------------
+	private WebSocketClient transportClient() {
+		StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+		if ("native".equalsIgnoreCase(TRANSPORT)) {
+			return webSocketClient;
+		}
+		return new SockJsClient(List.of(new WebSocketTransport(webSocketClient)));
+	}
+
+	private String url() {
+		return "native".equalsIgnoreCase(TRANSPORT)
+				? "ws://localhost:" + port + "/ws-native"
+				: "http://localhost:" + port + "/ws";
+	}
+
+	private CompletableFuture<StompSession> connect(WebSocketStompClient client, int user) {
+		String me = userId(user);
+
+		StompHeaders connectHeaders = new StompHeaders();
+		connectHeaders.add("Authorization", "Bearer " + jwtUtil.generateToken(me, "tenant"));
+
+		return client.connectAsync(url(), new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+			@Override
+			public void afterConnected(StompSession session, StompHeaders headers) {
+				session.subscribe("/user/queue/messages", frames(payload -> onMessage(me, payload)));
+				session.subscribe("/user/queue/typing", frames(payload -> typingReceived.incrementAndGet()));
+				session.subscribe("/user/queue/presence", frames(payload -> presenceDeltas.incrementAndGet()));
+			}
+
+			@Override
+			public void handleTransportError(StompSession session, Throwable exception) {
+				errors.incrementAndGet();
+			}
+		});
+	}
+
+	private void send(StompSession session, String me, String partner) {
+		StompHeaders headers = new StompHeaders();
+		headers.setDestination("/app/chat/send");
+		headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+
+		// the send time travels in the text, same JVM so nanoTime is comparable
+		session.send(headers, toJson(Map.of(
+				"receiver", partner,
+				"message", MARKER + System.nanoTime()
+		)));
+		if (measuring) sent.incrementAndGet();
+	}
+
+	private void typing(StompSession session, String me, String partner) {
+		StompHeaders headers = new StompHeaders();
+		headers.setDestination("/app/chat/typing");
+		headers.add("receiver-id", partner);
+
+		session.send(headers, new byte[0]);
+		if (measuring) typingSent.incrementAndGet();
+	}
+
+	private void onMessage(String me, byte[] payload) {
+		if (!measuring) return;
+		try {
+			JsonNode message = json.readTree(payload);
+			// the sender gets its own echo, only the receiver side counts
+			if (me.equals(message.path("sender").asText())) return;
+
+			String text = message.path("message").asText();
+			if (!text.startsWith(MARKER)) return;
+
+			long sentAt = Long.parseLong(text.substring(MARKER.length()));
+			latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt));
+			delivered.incrementAndGet();
+		} catch (IOException | NumberFormatException e) {
+			errors.incrementAndGet();
+		}
+	}
+
+	private StompFrameHandler frames(Consumer<byte[]> onFrame) {
+		return new StompFrameHandler() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return byte[].class;
+			}
+
+			@Override
+			public void handleFrame(StompHeaders headers, Object payload) {
+				onFrame.accept((byte[]) payload);
+			}
+		};
+	}
+
+	// ------------------- REPORT -----------------------
+	private void report(long runMs) {
+		double seconds = runMs / 1000.0;
+
+		System.out.println("------------------- CHAT LOAD -----------------------");
+		System.out.printf("users=%d duration=%.1fs transport=%s send-rate=%.2f/user/s%n",
+				USERS, seconds, TRANSPORT, SEND_RATE);
+		System.out.printf("messages   sent=%d delivered=%d throughput=%.0f msg/s%n",
+				sent.get(), delivered.get(), delivered.get() / seconds);
+		System.out.printf("latency    p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+				latency.percentile(0.50) / 1000.0,
+				latency.percentile(0.90) / 1000.0,
+				latency.percentile(0.99) / 1000.0,
+				latency.percentile(0.999) / 1000.0,
+				latency.max() / 1000.0);
+		System.out.printf("typing     sent=%d received=%d%n", typingSent.get(), typingReceived.get());
+		System.out.printf("presence   deltas=%d reconnects=%d%n", presenceDeltas.get(), reconnects.get());
+		System.out.printf("errors     %d%n", errors.get());
+	}
+
+	// ------------------- HELPERS -----------------------
+	// a small ring of partners per user, so presence has real contacts to fan out to
+	private int partnerOf(int user, ThreadLocalRandom rnd) {
+		return (user + 1 + rnd.nextInt(Math.min(4, USERS - 1))) % USERS;
+	}
+
+	private String userId(int user) {
+		return String.format("load%08d", user);
+	}
+
+	private byte[] toJson(Object value) {
+		try {
+			return json.writeValueAsBytes(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String tempJournalDir() {
+		try {
+			return Files.createTempDirectory("chat-journal-load").toAbsolutePath().toString();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
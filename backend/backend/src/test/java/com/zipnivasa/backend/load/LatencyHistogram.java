@@ -0,0 +1,65 @@
+package com.zipnivasa.backend.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of microsecond latencies: exact below
+ * 64 µs, then 32 linear sub-buckets per power of two (~3% error).
+ */
+final class LatencyHistogram {
+
+	private static final int SUB_BUCKETS = 64;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final int SHIFTS = 58;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + SHIFTS * HALF);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long micros) {
+		long v = Math.max(micros, 0);
+		counts.incrementAndGet(indexOf(v));
+		total.incrementAndGet();
+		max.accumulateAndGet(v, Math::max);
+	}
+
+	long count() {
+		return total.get();
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	/** Upper bound of the bucket holding the q-th quantile, 0 when empty. */
+	long percentile(double q) {
+		long n = total.get();
+		if (n == 0) return 0;
+
+		long target = Math.max(1, (long) Math.ceil(q * n));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= target) return upperBound(i);
+		}
+		return max.get();
+	}
+
+	private static int indexOf(long v) {
+		if (v < SUB_BUCKETS) return (int) v;
+
+		int shift = 63 - Long.numberOfLeadingZeros(v) - (Integer.numberOfTrailingZeros(SUB_BUCKETS) - 1);
+		int sub = (int) (v >>> shift);
+		return SUB_BUCKETS + (shift - 1) * HALF + (sub - HALF);
+	}
+
+	private static long upperBound(int index) {
+		if (index < SUB_BUCKETS) return index;
+
+		int k = index - SUB_BUCKETS;
+		int shift = k / HALF + 1;
+		long sub = k % HALF + HALF;
+		return ((sub + 1) << shift) - 1;
+	}
+}
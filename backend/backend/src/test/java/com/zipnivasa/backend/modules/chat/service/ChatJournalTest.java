@@ -0,0 +1,193 @@
+package com.zipnivasa.backend.modules.chat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.zipnivasa.backend.modules.chat.model.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatJournalTest {
+
+	private static final int HEADER_BYTES = 4 + 8 + 4;
+
+	@TempDir
+	Path dir;
+
+	private final List<ChatJournal> opened = new ArrayList<>();
+
+	@AfterEach
+	void closeAll() throws IOException {
+		for (ChatJournal journal : opened) {
+			journal.close();
+		}
+	}
+
+	@Test
+	void rollsSegmentsAndReadsAcrossThem() throws IOException {
+		ChatJournal journal = open(1024);
+		for (int i = 1; i <= 20; i++) {
+			assertEquals(i, journal.append(message(i)));
+		}
+
+		assertTrue(segmentCount() > 1, "expected the journal to roll");
+		assertEquals(ids(1, 20), idsOf(journal.openCursor(1).next(100)));
+	}
+
+	@Test
+	void reopensAfterATornWrite() throws IOException {
+		ChatJournal journal = open(64 * 1024);
+		for (int i = 1; i <= 3; i++) {
+			journal.append(message(i));
+		}
+		close(journal);
+
+		tearLastRecord();
+
+		ChatJournal reopened = open(64 * 1024);
+		assertEquals(2, reopened.getLastSeq());
+		assertEquals(3, reopened.append(message(4)));
+		assertEquals(List.of("m1", "m2", "m4"), idsOf(reopened.openCursor(1).next(100)));
+	}
+
+	@Test
+	void checkpointOnlyMovesOverContiguousSeqs() throws IOException {
+		ChatJournal journal = open(64 * 1024);
+		for (int i = 1; i <= 3; i++) {
+			journal.append(message(i));
+		}
+
+		journal.markPersisted(List.of(message(3)));
+		assertEquals(0, journal.getCheckpoint());
+
+		journal.markPersisted(List.of(message(1)));
+		assertEquals(1, journal.getCheckpoint());
+
+		journal.markPersisted(List.of(message(2)));
+		assertEquals(3, journal.getCheckpoint());
+
+		close(journal);
+		assertEquals(3, open(64 * 1024).getCheckpoint());
+	}
+
+	@Test
+	void replaysEverythingAfterTheCheckpoint() throws IOException {
+		ChatJournal journal = open(1024);
+		for (int i = 1; i <= 10; i++) {
+			journal.append(message(i));
+		}
+		journal.markPersisted(List.of(message(1), message(2), message(3)));
+		close(journal);
+
+		ChatJournal reopened = open(1024);
+		assertEquals(3, reopened.getCheckpoint());
+		assertEquals(ids(4, 10), idsOf(reopened.openCursor(reopened.getCheckpoint() + 1).next(100)));
+	}
+
+	@Test
+	void cursorFromAnOlderSpillPointSkipsCheckpointedRecords() throws IOException {
+		ChatJournal journal = open(64 * 1024);
+		for (int i = 1; i <= 4; i++) {
+			journal.append(message(i));
+		}
+		ChatJournal.Cursor cursor = journal.openCursor(1);
+		journal.markPersisted(List.of(message(1), message(2)));
+
+		assertEquals(List.of("m3", "m4"), idsOf(cursor.next(100)));
+
+		journal.markPersisted(List.of(message(3), message(4)));
+		assertEquals(4, journal.getCheckpoint());
+	}
+
+	@Test
+	void refusesADirectoryAnotherJournalHolds() throws IOException {
+		ChatJournal first = open(64 * 1024);
+		assertThrows(IllegalStateException.class, () -> open(64 * 1024));
+
+		close(first);
+		open(64 * 1024);
+	}
+
+	@Test
+	void refusesARelativeDirectory() {
+		ChatJournal journal = new ChatJournal(new ObjectMapper(), new SimpleMeterRegistry(), true, "data/chat-journal", 1024, 1000);
+		assertThrows(IllegalStateException.class, journal::open);
+	}
+
+	// ---- helpers ----
+	private ChatJournal open(int segmentBytes) throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+		ChatJournal journal = new ChatJournal(objectMapper, new SimpleMeterRegistry(), true, dir.toString(), segmentBytes, 1000);
+		journal.open();
+		opened.add(journal);
+		return journal;
+	}
+
+	private void close(ChatJournal journal) throws IOException {
+		opened.remove(journal);
+		journal.close();
+	}
+
+	private long segmentCount() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(p -> p.getFileName().toString().endsWith(".seg")).count();
+		}
+	}
+
+	// flips a payload byte of the last record, its crc no longer matches
+	private void tearLastRecord() throws IOException {
+		Path segment;
+		try (Stream<Path> files = Files.list(dir)) {
+			segment = files.filter(p -> p.getFileName().toString().endsWith(".seg")).sorted().reduce((a, b) -> b).orElseThrow();
+		}
+
+		try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+			int last = 0;
+			for (int pos = 0; buf.getInt(pos) > 0; pos += HEADER_BYTES + buf.getInt(pos)) {
+				last = pos;
+			}
+			int at = last + HEADER_BYTES + 1;
+			buf.put(at, (byte) (buf.get(at) ^ 0x7f));
+		}
+	}
+
+	private static Message message(int n) {
+		return Message.builder()
+				.id("m" + n)
+				.sender("a")
+				.receiver("b")
+				.conversationKey("a:b")
+				.message("hello " + n)
+				.createdAt(Instant.ofEpochMilli(n))
+				.build();
+	}
+
+	private static List<String> ids(int from, int to) {
+		List<String> ids = new ArrayList<>();
+		for (int i = from; i <= to; i++) {
+			ids.add("m" + i);
+		}
+		return ids;
+	}
+
+	private static List<String> idsOf(List<Message> messages) {
+		return messages.stream().map(Message::getId).toList();
+	}
+}
@@ -0,0 +1,258 @@
+package com.zipnivasa.backend.modules.pg.service;
+
+import com.zipnivasa.backend.modules.pg.dto.PGPage;
+import com.zipnivasa.backend.modules.pg.dto.PGQuery;
+import com.zipnivasa.backend.modules.pg.dto.PGSummary;
+import com.zipnivasa.backend.modules.pg.model.PG;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The index against a plain filter + sort over the same PGs, which is
+ * what the Mongo query in PGQueryService returns.
+ */
+class PGListingIndexTest {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+	@Test
+	void pagesMatchTheReferenceForEverySortAndFilter() {
+		List<PG> pgs = randomPGs(400, new Random(42));
+		PGListingIndex index = index(pgs);
+
+		List<PGQuery> queries = new ArrayList<>();
+		for (PGQuery.Sort sort : PGQuery.Sort.values()) {
+			queries.add(query(sort, q -> {}));
+			queries.add(query(sort, q -> q.setAvailable(null)));
+			queries.add(query(sort, q -> q.setAvailable(false)));
+			queries.add(query(sort, q -> q.setMinRent(6000d)));
+			queries.add(query(sort, q -> q.setMaxRent(6000d)));
+			queries.add(query(sort, q -> q.setMaxDeposit(10000d)));
+			queries.add(query(sort, q -> q.setLocation(" Pune ")));
+			queries.add(query(sort, q -> q.setOccupancyType("SHARED")));
+			queries.add(query(sort, q -> q.setAmenities(List.of("wifi", "ac"))));
+			queries.add(query(sort, q -> {
+				q.setLocation("bangalore");
+				q.setPropertyType("PG");
+				q.setMinRent(5000d);
+			}));
+		}
+
+		for (PGQuery q : queries) {
+			assertEquals(reference(pgs, q), walk(index, q), q.toString());
+		}
+	}
+
+	@Test
+	void equalRentsAreOrderedById() {
+		PGListingIndex index = index(List.of(
+				pg("000000000000000000000003", 5000d, T0),
+				pg("000000000000000000000001", 5000d, T0),
+				pg("000000000000000000000002", 5000d, T0)
+		));
+
+		assertEquals(List.of("000000000000000000000001", "000000000000000000000002", "000000000000000000000003"),
+				walk(index, query(PGQuery.Sort.RENT_ASC, q -> q.setLimit(1))));
+		assertEquals(List.of("000000000000000000000003", "000000000000000000000002", "000000000000000000000001"),
+				walk(index, query(PGQuery.Sort.RENT_DESC, q -> q.setLimit(1))));
+		assertEquals(List.of("000000000000000000000003", "000000000000000000000002", "000000000000000000000001"),
+				walk(index, query(PGQuery.Sort.NEWEST, q -> q.setLimit(1))));
+	}
+
+	@Test
+	void listingsWithoutRentOnlyAppearInNewest() {
+		PGListingIndex index = index(List.of(
+				pg("000000000000000000000001", null, T0),
+				pg("000000000000000000000002", 5000d, T0.plusSeconds(1)),
+				pg("000000000000000000000003", null, T0.plusSeconds(2))
+		));
+
+		assertEquals(List.of("000000000000000000000002"), walk(index, query(PGQuery.Sort.RENT_ASC, q -> {})));
+		assertEquals(List.of("000000000000000000000002"), walk(index, query(PGQuery.Sort.RENT_DESC, q -> {})));
+		assertEquals(List.of("000000000000000000000002"), walk(index, query(PGQuery.Sort.NEWEST, q -> q.setMinRent(0d))));
+		assertEquals(List.of("000000000000000000000003", "000000000000000000000002", "000000000000000000000001"),
+				walk(index, query(PGQuery.Sort.NEWEST, q -> {})));
+	}
+
+	@Test
+	void descendingCursorSkipsItsOwnItem() {
+		PGListingIndex index = index(List.of(
+				pg("000000000000000000000001", 5000d, T0),
+				pg("000000000000000000000002", 5000d, T0),
+				pg("000000000000000000000003", 5000d, T0)
+		));
+
+		PGQuery q = query(PGQuery.Sort.RENT_DESC, x -> {});
+		assertEquals(List.of("000000000000000000000001"),
+				ids(index.search(q, new PGCursor(5000d, "000000000000000000000002"))));
+
+		// the cursor's PG is gone from the index: everything after it in order still comes back
+		assertEquals(List.of("000000000000000000000002", "000000000000000000000001"),
+				ids(index.search(q, new PGCursor(5000d, "0000000000000000000000025"))));
+		assertEquals(List.of(), ids(index.search(q, new PGCursor(5000d, "000000000000000000000001"))));
+	}
+
+	@Test
+	void upsertIsSearchableAfterThePublish() {
+		PGListingIndex index = index(List.of(
+				pg("000000000000000000000001", 5000d, T0),
+				pg("000000000000000000000002", 6000d, T0)
+		));
+
+		PG cheaper = pg("000000000000000000000002", 4000d, T0);
+		cheaper.setUpdatedAt(T0.plusSeconds(60));
+		index.upsert(cheaper);
+
+		PGQuery q = query(PGQuery.Sort.RENT_ASC, x -> {});
+		assertEquals(List.of("000000000000000000000001", "000000000000000000000002"), walk(index, q));
+
+		index.publishPending();
+		assertEquals(List.of("000000000000000000000002", "000000000000000000000001"), walk(index, q));
+
+		// an older version does not overwrite the newer one
+		index.upsert(pg("000000000000000000000002", 9000d, T0));
+		index.publishPending();
+		assertEquals(List.of("000000000000000000000002", "000000000000000000000001"), walk(index, q));
+	}
+
+	@Test
+	void cursorRoundTrips() {
+		PGSummary last = PGSummary.builder()
+				.id("000000000000000000000007")
+				.monthlyRent(5500.5)
+				.createdAt(T0)
+				.build();
+
+		PGCursor byRent = PGCursor.parse(PGCursor.after(last, PGQuery.Sort.RENT_DESC));
+		assertEquals(5500.5, byRent.getValue());
+		assertEquals("000000000000000000000007", byRent.getId());
+
+		PGCursor byCreated = PGCursor.parse(PGCursor.after(last, PGQuery.Sort.NEWEST));
+		assertEquals((double) T0.toEpochMilli(), byCreated.getValue());
+		assertEquals("000000000000000000000007", byCreated.getId());
+
+		assertNull(PGCursor.parse(null));
+		assertNull(PGCursor.parse(" "));
+		assertThrows(IllegalArgumentException.class, () -> PGCursor.parse("not base64!"));
+		assertThrows(IllegalArgumentException.class, () -> PGCursor.parse("bm9jb2xvbg"));      // "nocolon"
+		assertThrows(IllegalArgumentException.class, () -> PGCursor.parse("YWJjOmlk"));        // "abc:id"
+	}
+
+	// ---- helpers ----
+
+	private static PGListingIndex index(List<PG> pgs) {
+		PGListingIndex index = new PGListingIndex(null, true);
+		index.loadAll(pgs);
+		assertTrue(index.isReady());
+		return index;
+	}
+
+	private static PGQuery query(PGQuery.Sort sort, Consumer<PGQuery> filters) {
+		PGQuery q = new PGQuery();
+		q.setSort(sort);
+		q.setLimit(7);
+		filters.accept(q);
+		return q;
+	}
+
+	// every page in turn, following nextCursor
+	private static List<String> walk(PGListingIndex index, PGQuery q) {
+		List<String> result = new ArrayList<>();
+		PGCursor cursor = null;
+		for (int pages = 0; pages < 1000; pages++) {
+			PGPage page = index.search(q, cursor);
+			result.addAll(ids(page));
+			if (!page.isHasMore()) {
+				assertNull(page.getNextCursor());
+				return result;
+			}
+			assertEquals(q.getLimit(), page.getItems().size());
+			cursor = PGCursor.parse(page.getNextCursor());
+		}
+		throw new AssertionError("paging did not end");
+	}
+
+	private static List<String> ids(PGPage page) {
+		return page.getItems().stream().map(PGSummary::getId).toList();
+	}
+
+	// the Mongo semantics of PGQueryService.search, over the whole result
+	private static List<String> reference(List<PG> pgs, PGQuery q) {
+		boolean byRent = q.getSort() != PGQuery.Sort.NEWEST;
+		boolean rentFilter = byRent || q.getMinRent() != null || q.getMaxRent() != null;
+
+		Predicate<PG> match = pg -> {
+			if (q.getAvailable() != null && !q.getAvailable().equals(pg.getAvailable())) return false;
+			if (q.getLocation() != null && !PG.locationKeyOf(q.getLocation()).equals(pg.getLocationKey())) return false;
+			if (q.getOccupancyType() != null && !q.getOccupancyType().equals(pg.getOccupancyType())) return false;
+			if (q.getPropertyType() != null && !q.getPropertyType().equals(pg.getPropertyType())) return false;
+			if (q.getAmenities() != null && !pg.getAmenities().containsAll(q.getAmenities())) return false;
+			if (q.getMaxDeposit() != null && (pg.getDeposit() == null || pg.getDeposit() > q.getMaxDeposit())) return false;
+			if (rentFilter) {
+				if (pg.getMonthlyRent() == null) return false;
+				if (pg.getMonthlyRent() < (q.getMinRent() != null ? q.getMinRent() : 0d)) return false;
+				if (q.getMaxRent() != null && pg.getMonthlyRent() > q.getMaxRent()) return false;
+			}
+			return true;
+		};
+
+		Comparator<PG> order = byRent
+				? Comparator.comparing(PG::getMonthlyRent)
+				: Comparator.comparing(PG::getCreatedAt);
+		order = order.thenComparing(PG::getId);
+		if (q.getSort() != PGQuery.Sort.RENT_ASC) order = order.reversed();
+
+		return pgs.stream().filter(match).sorted(order).map(PG::getId).toList();
+	}
+
+	// few distinct rents and timestamps, so ties are common
+	private static List<PG> randomPGs(int count, Random random) {
+		String[] locations = {"Pune", "Bangalore", "pune "};
+		String[] occupancy = {"SHARED", "PRIVATE"};
+		String[] types = {"PG", "HOSTEL"};
+		Double[] rents = {null, 4000d, 5000d, 6000d, 6000.5, 8000d};
+		Double[] deposits = {null, 5000d, 10000d, 20000d};
+		String[] amenities = {"wifi", "ac", "laundry", "food"};
+
+		List<PG> pgs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			PG pg = pg(String.format("%024x", random.nextInt(1 << 20)), rents[random.nextInt(rents.length)],
+					T0.plusSeconds(random.nextInt(20)));
+			if (pgs.stream().anyMatch(p -> p.getId().equals(pg.getId()))) continue;
+
+			pg.setLocation(locations[random.nextInt(locations.length)]);
+			pg.setLocationKey(PG.locationKeyOf(pg.getLocation()));
+			pg.setOccupancyType(occupancy[random.nextInt(occupancy.length)]);
+			pg.setPropertyType(types[random.nextInt(types.length)]);
+			pg.setDeposit(deposits[random.nextInt(deposits.length)]);
+			pg.setAvailable(random.nextInt(4) != 0);
+			for (String amenity : amenities) {
+				if (random.nextBoolean()) pg.getAmenities().add(amenity);
+			}
+			pgs.add(pg);
+		}
+		return pgs;
+	}
+
+	private static PG pg(String id, Double rent, Instant createdAt) {
+		return PG.builder()
+				.id(id)
+				.title("PG " + id)
+				.monthlyRent(rent)
+				.createdAt(createdAt)
+				.updatedAt(createdAt)
+				.build();
+	}
+}